@@ -0,0 +1,31 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    private final ChessBoard board = new ChessBoard();
+
+    @Benchmark
+    public ChessBoard resetBoard() {
+        board.resetBoard();
+        return board;
+    }
+
+    // What every new game pays: a fresh board set up from scratch
+    @Benchmark
+    public ChessBoard newBoard() {
+        ChessBoard fresh = new ChessBoard();
+        fresh.resetBoard();
+        return fresh;
+    }
+}
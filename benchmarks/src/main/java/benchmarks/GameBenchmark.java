@@ -0,0 +1,104 @@
+package benchmarks;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ChessGame calls the server makes for every move: legal moves, making a move, and the
+ * check, checkmate and stalemate tests and status that follow it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    private ChessGame kiwipete;
+    private ChessGame foolsMate;
+    private ChessGame stalemate;
+
+    private ChessPosition knight;
+    private ChessMove queenMove;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setup() {
+        kiwipete = Positions.kiwipete();
+        foolsMate = Positions.foolsMate();
+        stalemate = Positions.stalemate();
+        knight = new ChessPosition(5, 5);
+        queenMove = Positions.move(3, 6, 4, 6);
+    }
+
+    @Benchmark
+    public Collection<ChessMove> validMoves() {
+        return kiwipete.validMoves(knight);
+    }
+
+    // Every legal move for the side to move at once, into a list that is kept between calls
+    @Benchmark
+    public MoveList legalMoves() {
+        return kiwipete.legalMoves(moves);
+    }
+
+    // makeMove can't be repeated on its own, so this includes taking the move back
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        kiwipete.makeMove(queenMove);
+        kiwipete.undoMove();
+        return kiwipete;
+    }
+
+    // Same move without makeMove's legality check, for comparison with makeMove
+    @Benchmark
+    public ChessGame doMoveUndoMove() {
+        kiwipete.doMove(queenMove);
+        kiwipete.undoMove();
+        return kiwipete;
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return kiwipete.isInCheck(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return foolsMate.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    // Answered from the status cached for the position, like every repeated question after a move
+    @Benchmark
+    public boolean isInCheckmateNotMated() {
+        return kiwipete.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return stalemate.isInStalemate(ChessGame.TeamColor.BLACK);
+    }
+
+    @Benchmark
+    public boolean isInStalemateNotStalemate() {
+        return kiwipete.isInStalemate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public ChessGame.GameStatus getStatus() {
+        return kiwipete.getStatus();
+    }
+
+    // Status from scratch: the move list and draw checks are redone because the position changed
+    @Benchmark
+    public ChessGame.GameStatus makeMoveAndGetStatus() throws InvalidMoveException {
+        kiwipete.makeMove(queenMove);
+        ChessGame.GameStatus status = kiwipete.getStatus();
+        kiwipete.undoMove();
+        return status;
+    }
+}
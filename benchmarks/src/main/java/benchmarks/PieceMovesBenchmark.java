@@ -0,0 +1,39 @@
+package benchmarks;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChessPiece.pieceMoves (moves ignoring check) for one white piece of each type in Kiwipete
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceMovesBenchmark {
+
+    @Param({"KING", "QUEEN", "BISHOP", "KNIGHT", "ROOK", "PAWN"})
+    public ChessPiece.PieceType type;
+
+    private ChessBoard board;
+    private ChessPosition position;
+    private ChessPiece piece;
+
+    @Setup
+    public void setup() {
+        board = Positions.kiwipete().getBoard();
+        int square = Long.numberOfTrailingZeros(board.pieces(ChessGame.TeamColor.WHITE, type));
+        position = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        piece = board.getPiece(position);
+    }
+
+    @Benchmark
+    public Collection<ChessMove> pieceMoves() {
+        return piece.pieceMoves(board, position);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import chess.*;
+
+/**
+ * Games set up in the positions the benchmarks measure
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    // Busy middlegame with every piece type, castling and pins
+    static ChessGame kiwipete() {
+        return Perft.position("kiwipete").newGame();
+    }
+
+    // White is checkmated after 1. f3 e5 2. g4 Qh4#
+    static ChessGame foolsMate() {
+        ChessGame game = new ChessGame();
+        try {
+            game.makeMove(move(2, 6, 3, 6));
+            game.makeMove(move(7, 5, 5, 5));
+            game.makeMove(move(2, 7, 4, 7));
+            game.makeMove(move(8, 4, 4, 8));
+        } catch (InvalidMoveException e) {
+            throw new IllegalStateException(e);
+        }
+        return game;
+    }
+
+    // Black king in the corner with no moves and not in check
+    static ChessGame stalemate() {
+        return Fen.toGame("7k/8/6Q1/8/8/8/8/K7 b - - 0 1");
+    }
+
+    static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.Fen;
+import chess.GameCodec;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson round trip of a ChessGame, which is what the client does to read one, against the
+ * binary codec the server stores games with and FEN
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private final Gson gson = new Gson();
+
+    private ChessGame game;
+    private String json;
+    private byte[] encoded;
+    private String fen;
+
+    @Setup
+    public void setup() {
+        game = Positions.kiwipete();
+        json = gson.toJson(game);
+        encoded = GameCodec.encode(game);
+        fen = Fen.toFen(game);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(game);
+    }
+
+    @Benchmark
+    public ChessGame fromJson() {
+        return gson.fromJson(json, ChessGame.class);
+    }
+
+    // Reading the game back also rebuilds its bitboards, which happens on first use
+    @Benchmark
+    public long roundTrip() {
+        return gson.fromJson(gson.toJson(game), ChessGame.class).getZobristKey();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return GameCodec.encode(game);
+    }
+
+    @Benchmark
+    public ChessGame decode() {
+        return GameCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public long codecRoundTrip() {
+        return GameCodec.decode(GameCodec.encode(game)).getZobristKey();
+    }
+
+    @Benchmark
+    public String toFen() {
+        return Fen.toFen(game);
+    }
+
+    @Benchmark
+    public ChessGame fromFen() {
+        return Fen.toGame(fen);
+    }
+}
@@ -0,0 +1,42 @@
+package benchmarks;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * validMoves with tracing off and on, on four threads the way concurrent server requests
+ * would call it. With tracing on every call writes to stdout, so the threads queue up on
+ * the stream's lock; with it off the trace code should not show up at all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@State(Scope.Thread)
+public class TraceBenchmark {
+
+    private ChessGame game;
+    private ChessPosition knight;
+
+    @Setup
+    public void setup() {
+        game = Positions.kiwipete();
+        knight = new ChessPosition(5, 5);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dchess.trace=false")
+    public Collection<ChessMove> validMovesTraceOff() {
+        return game.validMoves(knight);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dchess.trace=true")
+    public Collection<ChessMove> validMovesTraceOn() {
+        return game.validMoves(knight);
+    }
+}
@@ -435,7 +435,7 @@ public class ChessClientUI {
         chess.ChessPosition start = parsePosition(startPart);
         chess.ChessPosition end = parsePosition(endPart);
         // Create a ChessMove; if your constructor requires a promotion piece, you can pass null.
-        return new chess.ChessMove(start, end, null);
+        return chess.ChessMove.of(start, end, null);
     }
     // Example helper inside ChessClientUI or a separate utility class.
     private chess.ChessPosition parsePosition(String pos) throws IllegalArgumentException {
@@ -450,7 +450,7 @@ public class ChessClientUI {
         }
         // Convert letter to a column number (a = 1, b = 2, ...)
         int col = colChar - 'a' + 1;
-        return new chess.ChessPosition(row, col);
+        return chess.ChessPosition.of(row, col);
     }
     private void printPreloginHelp() {
         System.out.println("Prelogin Help:");
@@ -91,7 +91,7 @@ public class ChessBoardRenderer {
         }
 
         // Get the piece at the given position.
-        var piece = board.getPiece(new chess.ChessPosition(row, col));
+        var piece = board.getPiece(chess.ChessPosition.of(row, col));
         String pieceStr;
         if (piece == null) {
             pieceStr = EscapeSequences.EMPTY;
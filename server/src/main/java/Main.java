@@ -1,3 +1,4 @@
+import chess.MagicBitboards;
 import server.Server;
 
 public class Main {
@@ -5,6 +6,7 @@ public class Main {
         Server server = new Server();
         int port = 8080; // Start the server on port 8080 as required
         System.out.println("Starting server on port " + port + "...");
+        System.out.println(MagicBitboards.report()); // Builds the move tables up front instead of on the first request
         server.run(port);
 
         // Print a message to let the user know the server is running
@@ -0,0 +1,165 @@
+package dataaccess;
+
+import model.AuthData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory cache of auth token lookups, so checking the token at the start of a request doesn't
+ * need a trip to MySQL each time. Tokens that turned out not to exist are cached too, for a
+ * shorter time and in a separate, smaller space, so a flood of bad tokens neither reaches the
+ * database nor pushes the good tokens out.
+ * <p>
+ * Both parts are bounded and drop their least recently used token when full, and every entry
+ * expires after its TTL. AuthDAO invalidates entries itself when it deletes tokens; the TTL is
+ * what limits staleness when rows change some other way (another server, or by hand).
+ */
+public final class AuthCache {
+
+    /**
+     * Hit and miss counts, and how many tokens are cached
+     */
+    public record Stats(long hits, long negativeHits, long misses, int size, int negativeSize) {
+    }
+
+    private final int maxSize;
+    private final int maxNegativeSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    // Both maps are in access order and guarded by this
+    private final LinkedHashMap<String, Cached> tokens;
+    private final LinkedHashMap<String, Long> missing;
+
+    // Bumped on every invalidation, so a lookup that raced with one doesn't cache what it read
+    private long generation = 0;
+
+    private long hits = 0;
+    private long negativeHits = 0;
+    private long misses = 0;
+
+    // A token that exists, and when this copy of it stops being trusted
+    private record Cached(AuthData auth, long expiresAt) {
+    }
+
+    /**
+     * @param maxSize         most valid tokens to keep
+     * @param ttlMillis       how long a valid token is trusted without asking the database again
+     * @param maxNegativeSize most unknown tokens to remember
+     * @param negativeTtlMillis how long an unknown token is remembered as unknown
+     */
+    public AuthCache(int maxSize, long ttlMillis, int maxNegativeSize, long negativeTtlMillis) {
+        this(maxSize, ttlMillis, maxNegativeSize, negativeTtlMillis, System::nanoTime);
+    }
+
+    AuthCache(int maxSize, long ttlMillis, int maxNegativeSize, long negativeTtlMillis, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.maxNegativeSize = maxNegativeSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.clock = clock;
+        this.tokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > AuthCache.this.maxSize;
+            }
+        };
+        this.missing = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > AuthCache.this.maxNegativeSize;
+            }
+        };
+    }
+
+    /**
+     * Looks a token up, asking the loader (the database) only if it isn't cached
+     *
+     * @return the token's auth data, or null if there is no such token
+     */
+    public AuthData get(String token, Loader loader) throws DataAccessException {
+        long now = clock.getAsLong();
+        long readGeneration;
+        synchronized (this) {
+            Cached cached = tokens.get(token);
+            if (cached != null) {
+                if (now - cached.expiresAt() < 0) {
+                    hits++;
+                    return cached.auth();
+                }
+                tokens.remove(token);
+            }
+            Long missingUntil = missing.get(token);
+            if (missingUntil != null) {
+                if (now - missingUntil < 0) {
+                    negativeHits++;
+                    return null;
+                }
+                missing.remove(token);
+            }
+            misses++;
+            readGeneration = generation;
+        }
+
+        // Not holding the lock while the database answers. Two requests for the same uncached
+        // token may both ask; they get the same answer
+        AuthData auth = loader.load(token);
+        synchronized (this) {
+            if (readGeneration == generation) {
+                if (auth != null) {
+                    put(auth);
+                } else if (maxNegativeSize > 0) {
+                    missing.put(token, now + negativeTtlNanos);
+                }
+            }
+        }
+        return auth;
+    }
+
+    /**
+     * Caches a token that is known to exist, such as one just created
+     */
+    public synchronized void put(AuthData auth) {
+        missing.remove(auth.getAuthToken());
+        if (maxSize > 0) {
+            tokens.put(auth.getAuthToken(), new Cached(auth, clock.getAsLong() + ttlNanos));
+        }
+    }
+
+    /**
+     * Forgets a token, e.g. because it was deleted
+     */
+    public synchronized void invalidate(String token) {
+        generation++;
+        tokens.remove(token);
+        missing.remove(token);
+    }
+
+    /**
+     * Forgets every token
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        tokens.clear();
+        missing.clear();
+    }
+
+    /**
+     * @return hit and miss counts so far
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, negativeHits, misses, tokens.size(), missing.size());
+    }
+
+    /**
+     * Fetches a token that isn't cached
+     */
+    @FunctionalInterface
+    public interface Loader {
+        AuthData load(String token) throws DataAccessException;
+    }
+}
@@ -6,6 +6,17 @@ import java.util.UUID;
 
 public class AuthDAO {
 
+    // Shared by every AuthDAO, since services each make their own and a token deleted through one
+    // must not stay valid in another's cache. Up to 10,000 tokens are trusted for a minute, and
+    // unknown tokens are remembered for 5 seconds
+    private static final AuthCache CACHE = new AuthCache(10_000, 60_000, 10_000, 5_000);
+
+    // Tokens expire after this long unused, or this long after login, whichever comes first
+    // (seconds, set in db.properties). As lookups are cached, a token can outlive either by up to
+    // the cache's minute, or until the sweeper deletes it
+    private static final long IDLE_TIMEOUT_SECONDS = DatabaseManager.longProperty("auth.idleTimeout", 24 * 60 * 60);
+    private static final long MAX_LIFETIME_SECONDS = DatabaseManager.longProperty("auth.maxLifetime", 30 * 24 * 60 * 60);
+
     // Create a new auth token and store it in the database.
     public String createAuth(String username) throws DataAccessException {
         String token = UUID.randomUUID().toString();
@@ -15,25 +26,47 @@ public class AuthDAO {
             stmt.setString(1, token);
             stmt.setString(2, username);
             stmt.executeUpdate();
+            CACHE.put(new AuthData(token, username));
             return token;
         } catch (SQLException e) {
             throw new DataAccessException("Error creating auth token: " + e.getMessage());
         }
     }
 
-    // Retrieve auth data by token.
+    // Retrieve auth data by token, from the cache if it was looked up recently.
     public AuthData getAuth(String token) throws DataAccessException {
-        String sql = "SELECT * FROM auth WHERE authToken = ?";
+        return CACHE.get(token, this::loadAuth);
+    }
+
+    // Token statistics for the shared cache
+    public static AuthCache.Stats cacheStats() {
+        return CACHE.stats();
+    }
+
+    // Looks a token up in the database, treating expired ones as gone, and marks it used. This only
+    // runs when the token isn't cached, so an active token's lastUsedAt is written about once a minute
+    private AuthData loadAuth(String token) throws DataAccessException {
+        String sql = """
+                SELECT username FROM auth WHERE authToken = ?
+                AND issuedAt > NOW(3) - INTERVAL ? SECOND AND lastUsedAt > NOW(3) - INTERVAL ? SECOND""";
+        String touchSql = "UPDATE auth SET lastUsedAt = NOW(3) WHERE authToken = ?";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, token);
+            stmt.setLong(2, MAX_LIFETIME_SECONDS);
+            stmt.setLong(3, IDLE_TIMEOUT_SECONDS);
+            String username;
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    String username = rs.getString("username");
-                    return new AuthData(token, username);
+                if (!rs.next()) {
+                    return null;
                 }
-                return null;
+                username = rs.getString("username");
             }
+            try (PreparedStatement touchStmt = conn.prepareStatement(touchSql)) {
+                touchStmt.setString(1, token);
+                touchStmt.executeUpdate();
+            }
+            return new AuthData(token, username);
         } catch (SQLException e) {
             throw new DataAccessException("Error retrieving auth token: " + e.getMessage());
         }
@@ -48,6 +81,37 @@ public class AuthDAO {
             stmt.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error deleting auth token: " + e.getMessage());
+        } finally {
+            CACHE.invalidate(token); // Even if the delete failed, don't trust the cached copy
+        }
+    }
+
+    // Deletes up to limit expired tokens and returns how many went. Each DELETE is a short statement
+    // over an indexed range, so it only locks the rows it removes and logins carry on meanwhile
+    public int deleteExpired(int limit) throws DataAccessException {
+        String idleSql = "DELETE FROM auth WHERE lastUsedAt <= NOW(3) - INTERVAL ? SECOND LIMIT ?";
+        String lifetimeSql = "DELETE FROM auth WHERE issuedAt <= NOW(3) - INTERVAL ? SECOND LIMIT ?";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int deleted;
+            try (PreparedStatement stmt = conn.prepareStatement(idleSql)) {
+                stmt.setLong(1, IDLE_TIMEOUT_SECONDS);
+                stmt.setInt(2, limit);
+                deleted = stmt.executeUpdate();
+            }
+            if (deleted < limit) {
+                try (PreparedStatement stmt = conn.prepareStatement(lifetimeSql)) {
+                    stmt.setLong(1, MAX_LIFETIME_SECONDS);
+                    stmt.setInt(2, limit - deleted);
+                    deleted += stmt.executeUpdate();
+                }
+            }
+            if (deleted > 0) {
+                // Which tokens went isn't known, so forget them all rather than let a swept one keep working
+                CACHE.invalidateAll();
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error deleting expired auth tokens: " + e.getMessage());
         }
     }
 
@@ -59,6 +123,8 @@ public class AuthDAO {
             stmt.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error clearing auth tokens: " + e.getMessage());
+        } finally {
+            CACHE.invalidateAll();
         }
     }
 }
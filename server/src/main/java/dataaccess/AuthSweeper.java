@@ -0,0 +1,74 @@
+package dataaccess;
+
+import chess.Trace;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired auth tokens in the background, so the auth table doesn't grow forever. Each run
+ * deletes in batches of batchSize rows, each its own short statement, until a batch comes back
+ * short, so it never holds locks on much of the table at once.
+ */
+public class AuthSweeper implements AutoCloseable {
+
+    private final AuthDAO authDAO;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+
+    public AuthSweeper(AuthDAO authDAO, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid sweep batch size: " + batchSize);
+        }
+        this.authDAO = authDAO;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "auth-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sweeps now and then every intervalSeconds
+     */
+    public void start(long intervalSeconds) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                int deleted = sweep();
+                if (Trace.ENABLED && deleted > 0) {
+                    Trace.log("Deleted " + deleted + " expired auth tokens");
+                }
+            } catch (DataAccessException | RuntimeException e) {
+                // Anything thrown out of here would quietly cancel every later run, so note it and go on;
+                // the next run tries again
+                if (Trace.ENABLED) {
+                    Trace.log("Auth token sweep failed: " + e);
+                }
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Deletes every expired token, a batch at a time
+     *
+     * @return how many were deleted
+     */
+    public int sweep() throws DataAccessException {
+        int total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            int deleted = authDAO.deleteExpired(batchSize);
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
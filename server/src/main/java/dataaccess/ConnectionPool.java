@@ -0,0 +1,638 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of database connections, so DAO calls don't each pay for a new MySQL
+ * connection (handshake, login and setCatalog). Connections handed out by borrow() go back
+ * to the pool when closed, so the usual try-with-resources blocks work unchanged.
+ * <p>
+ * Idle connections are checked with isValid before being handed out again, and a background
+ * task closes ones that have sat idle too long (down to the minimum size) or have been open
+ * longer than the maximum lifetime, then tops the pool back up to the minimum.
+ * <p>
+ * Each connection also keeps its most recently used prepared statements open, so running the
+ * same SQL again on it skips preparing (and, with server-side prepares, MySQL's parse and plan).
+ * Closing such a statement just returns it to the connection's cache, and closing the connection
+ * does that for any statements the borrower left open.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Opens a new physical connection for the pool
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * Pool sizes and timeouts. All times are in milliseconds
+     *
+     * @param minSize        connections to keep open even when idle
+     * @param maxSize        most connections open at once; borrowers wait beyond this
+     * @param maxWait        how long borrow() waits for a connection before giving up
+     * @param idleTimeout    idle connections above minSize are closed after this long
+     * @param maxLifetime    connections are closed once this old, even if busy (when returned)
+     * @param validateAfter  connections idle for less than this are handed out without a check
+     * @param statementCacheSize prepared statements kept open per connection; 0 turns the cache off
+     */
+    public record Settings(int minSize, int maxSize, long maxWait, long idleTimeout, long maxLifetime,
+                           long validateAfter, int statementCacheSize) {
+
+        public Settings {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+            }
+            if (statementCacheSize < 0) {
+                throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+            }
+        }
+    }
+
+    /**
+     * A snapshot of how the pool is doing, mostly to see whether maxSize is big enough:
+     * if borrowers spend a long time waiting, it isn't
+     */
+    public record Stats(int open, int idle, long borrows, long timeouts, long totalWaitNanos, long maxWaitNanos,
+                        long created, long closed, long statementHits, long statementMisses) {
+
+        /**
+         * @return the average time borrow() took, in nanoseconds
+         */
+        public long averageWaitNanos() {
+            return borrows == 0 ? 0 : totalWaitNanos / borrows;
+        }
+
+        /**
+         * @return the fraction of prepareStatement calls served from a connection's statement cache
+         */
+        public double statementHitRate() {
+            long total = statementHits + statementMisses;
+            return total == 0 ? 0 : (double) statementHits / total;
+        }
+    }
+
+    // How often the background task looks for idle and old connections
+    private static final long EVICTION_INTERVAL_MILLIS = 30_000;
+    // isValid gets this long (in seconds) to answer
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final Settings settings;
+
+    // Everything below is guarded by lock. Idle connections are used newest first, so the ones
+    // at the bottom of the stack are the ones left to time out when the pool is quiet
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private int open = 0;
+    private boolean closed = false;
+
+    private long borrows = 0;
+    private long timeouts = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long created = 0;
+    private long destroyed = 0;
+    // Counted by borrowers as they prepare statements, without taking the lock
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(ConnectionFactory factory, Settings settings) {
+        this(factory, settings, EVICTION_INTERVAL_MILLIS);
+    }
+
+    ConnectionPool(ConnectionFactory factory, Settings settings, long evictionIntervalMillis) {
+        this.factory = factory;
+        this.settings = settings;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The first run fills the pool to minSize without holding up the constructor
+        evictor.scheduleWithFixedDelay(this::evict, 0, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to maxWait if all maxSize are in use. Closing the
+     * returned connection gives it back to the pool.
+     *
+     * @throws SQLException if no connection came free in time or a new one couldn't be opened
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.maxWait());
+        while (true) {
+            Entry entry = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed.");
+                    }
+                    entry = idle.pollFirst();
+                    if (entry != null || open < settings.maxSize()) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLException("Timed out after " + settings.maxWait()
+                                + " ms waiting for a database connection (" + open + " in use).");
+                    }
+                    try {
+                        returned.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted waiting for a database connection.", e);
+                    }
+                }
+                if (entry == null) {
+                    open++; // Claim the slot now so other borrowers can't overshoot maxSize
+                    create = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                entry = newEntry();
+            } else if (!isUsable(entry)) {
+                destroy(entry);
+                continue;
+            }
+            recordBorrow(System.nanoTime() - start);
+            return entry.lease();
+        }
+    }
+
+    /**
+     * @return current counts and wait times
+     */
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(open, idle.size(), borrows, timeouts, totalWaitNanos, maxWaitNanos, created, destroyed,
+                    statementHits.sum(), statementMisses.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the idle connections and stops the pool. Borrowed connections are closed as they
+     * come back.
+     */
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        ArrayDeque<Entry> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(this::destroy);
+    }
+
+    // Opens a connection for a slot the caller has already counted in open
+    private Entry newEntry() throws SQLException {
+        try {
+            Entry entry = new Entry(factory.create());
+            lock.lock();
+            try {
+                created++;
+            } finally {
+                lock.unlock();
+            }
+            return entry;
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                open--;
+                returned.signal(); // Someone waiting can try for the slot
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    // Checks an idle connection before handing it out. One that was used a moment ago is taken
+    // on trust, so a busy pool doesn't ping MySQL before every query
+    private boolean isUsable(Entry entry) {
+        long now = System.currentTimeMillis();
+        if (now - entry.createdAt >= settings.maxLifetime()) {
+            return false;
+        }
+        if (now - entry.returnedAt < settings.validateAfter()) {
+            return true;
+        }
+        try {
+            return entry.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordBorrow(long waitNanos) {
+        lock.lock();
+        try {
+            borrows++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called when a borrowed connection is closed
+    private void release(Entry entry) {
+        boolean keep = !entry.broken && System.currentTimeMillis() - entry.createdAt < settings.maxLifetime();
+        if (keep) {
+            keep = reset(entry.connection);
+        }
+        lock.lock();
+        try {
+            if (keep && !closed) {
+                entry.returnedAt = System.currentTimeMillis();
+                idle.addFirst(entry);
+                returned.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(entry);
+    }
+
+    // Undoes anything a borrower may have changed, so the next one gets a plain connection
+    private static boolean reset(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Closes a connection that has left the pool for good, freeing its slot
+    private void destroy(Entry entry) {
+        try {
+            entry.connection.close();
+        } catch (SQLException ignored) {
+            // It's being thrown away anyway
+        }
+        lock.lock();
+        try {
+            open--;
+            destroyed++;
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs in the background: closes idle connections that are too old or have been idle too
+    // long, then opens new ones up to minSize
+    void evict() {
+        ArrayDeque<Entry> toClose = new ArrayDeque<>();
+        int toOpen;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int keep = open;
+            // Oldest idle connections are at the end
+            for (Iterator<Entry> it = idle.descendingIterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                boolean tooOld = now - entry.createdAt >= settings.maxLifetime();
+                boolean idleTooLong = now - entry.returnedAt >= settings.idleTimeout() && keep > settings.minSize();
+                if (tooOld || idleTooLong) {
+                    it.remove();
+                    toClose.add(entry);
+                    keep--;
+                }
+            }
+            toOpen = Math.max(0, settings.minSize() - keep);
+            open = keep + toOpen;
+            // The slots being closed were already taken out of open above
+            destroyed += toClose.size();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Entry entry : toClose) {
+            try {
+                entry.connection.close();
+            } catch (SQLException ignored) {
+                // It's being thrown away anyway
+            }
+        }
+        for (int i = 0; i < toOpen; i++) {
+            Entry entry;
+            try {
+                entry = newEntry();
+            } catch (SQLException | RuntimeException e) {
+                // newEntry gave the slot back. The database may be down; try again next run
+                lock.lock();
+                try {
+                    open -= toOpen - i - 1;
+                    returned.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            release(entry);
+        }
+    }
+
+    // A physical connection and what the pool knows about it
+    private final class Entry {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private long returnedAt = createdAt;
+        private boolean broken = false;
+
+        // Prepared statements by SQL, least recently used first. Only the borrower touches this
+        private final LinkedHashMap<StatementKey, CachedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest) {
+                        if (size() <= settings.statementCacheSize()) {
+                            return false;
+                        }
+                        eldest.getValue().evict();
+                        return true;
+                    }
+                };
+
+        private Entry(Connection connection) {
+            this.connection = connection;
+        }
+
+        // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) go through here
+        private PreparedStatement prepare(Connection lease, StatementKey key) throws SQLException {
+            if (settings.statementCacheSize() == 0) {
+                statementMisses.increment();
+                return oneOff(lease, key);
+            }
+            CachedStatement cached = statements.get(key);
+            if (cached != null && cached.evicted) {
+                // Closed and on its way out; never hand it out again
+                statements.remove(key, cached);
+                cached = null;
+            }
+            if (cached != null && !cached.inUse) {
+                statementHits.increment();
+            } else {
+                statementMisses.increment();
+                if (cached != null) {
+                    // The same SQL is already open on this connection, so this one is only used once
+                    return oneOff(lease, key);
+                }
+                cached = new CachedStatement(key, key.prepare(connection));
+                statements.put(key, cached);
+            }
+            cached.inUse = true;
+            return cached.lease(lease, this);
+        }
+
+        // A statement kept out of the cache, wrapped all the same so getConnection returns the lease
+        // rather than the physical connection. Closing it really closes it
+        private PreparedStatement oneOff(Connection lease, StatementKey key) throws SQLException {
+            CachedStatement statement = new CachedStatement(key, key.prepare(connection));
+            statement.inUse = true;
+            statement.evicted = true;
+            return statement.lease(lease, this);
+        }
+
+        private void markBroken(Throwable e) {
+            if (e instanceof SQLException sqlException && isConnectionError(sqlException)) {
+                broken = true;
+            }
+        }
+
+        // Wraps the connection for one borrower. Closing the wrapper closes the statements it
+        // prepared and returns the connection, and any later use of the wrapper (or of those
+        // statements) fails, as it would for a real closed connection
+        private Connection lease() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean leaseClosed = false;
+                // Statements prepared through this lease that may still be open
+                private final ArrayList<PreparedStatement> issued = new ArrayList<>();
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!leaseClosed) {
+                                leaseClosed = true;
+                                closeIssued();
+                                release(Entry.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return leaseClosed || connection.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled " + connection;
+                        default:
+                            break;
+                    }
+                    if (leaseClosed) {
+                        throw new SQLException("Connection is closed.");
+                    }
+                    StatementKey key = StatementKey.of(method, args);
+                    try {
+                        if (key != null) {
+                            PreparedStatement statement = prepare((Connection) proxy, key);
+                            issued.add(statement);
+                            return statement;
+                        }
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        // A connection that failed outright (rather than a bad statement) shouldn't go back in the pool
+                        markBroken(e.getCause());
+                        throw e.getCause();
+                    } catch (SQLException e) {
+                        markBroken(e);
+                        throw e;
+                    }
+                }
+
+                // A cached statement goes back to the cache and can't be used through its old
+                // wrapper; a one-off one really closes
+                private void closeIssued() {
+                    for (PreparedStatement statement : issued) {
+                        try {
+                            statement.close();
+                        } catch (SQLException ignored) {
+                            // The connection is going back either way
+                        }
+                    }
+                    issued.clear();
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+
+    // What a cached statement was prepared from. Only the plain prepareStatement forms are cached;
+    // the rest (result set types, column lists) aren't used here and are prepared as normal
+    private record StatementKey(String sql, int autoGeneratedKeys) {
+
+        private static StatementKey of(Method method, Object[] args) {
+            if (!method.getName().equals("prepareStatement")) {
+                return null;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            if (types.length == 1) {
+                return new StatementKey((String) args[0], PreparedStatement.NO_GENERATED_KEYS);
+            }
+            if (types.length == 2 && types[1] == int.class) {
+                return new StatementKey((String) args[0], (Integer) args[1]);
+            }
+            return null;
+        }
+
+        private PreparedStatement prepare(Connection connection) throws SQLException {
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+    }
+
+    // A statement kept open in a connection's cache, and whether a borrower has it right now. One-off
+    // statements that aren't cached use this too, marked evicted from the start
+    private static final class CachedStatement {
+        private final StatementKey key;
+        private final PreparedStatement statement;
+        private boolean inUse = false;
+        private boolean evicted = false;
+
+        private CachedStatement(StatementKey key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        // Dropped from the cache: closed now, or when the borrower using it is done
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        // Wraps the statement for one borrower. Closing the wrapper clears the parameters and puts
+        // the statement back in the cache instead of closing it
+        private PreparedStatement lease(Connection lease, Entry entry) {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean leaseClosed = false;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!leaseClosed) {
+                                leaseClosed = true;
+                                giveBack(entry);
+                            }
+                            return null;
+                        case "isClosed":
+                            return leaseClosed || statement.isClosed();
+                        case "getConnection":
+                            return lease;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Cached " + statement;
+                        default:
+                            break;
+                    }
+                    if (leaseClosed) {
+                        throw new SQLException("Statement is closed.");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        entry.markBroken(e.getCause());
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, handler);
+        }
+
+        private void giveBack(Entry entry) {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                // Can't be reused, so take it out of the cache; the next prepare makes a new one
+                evicted = true;
+                entry.statements.remove(key, this);
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Closing the connection closes it anyway
+            }
+        }
+    }
+
+    // SQLState class 08 is "connection exception"
+    private static boolean isConnectionError(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+}
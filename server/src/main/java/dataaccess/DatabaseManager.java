@@ -8,6 +8,12 @@ public class DatabaseManager {
     private static final String USER;
     private static final String PASSWORD;
     private static final String CONNECTION_URL;
+    private static final ConnectionPool.Settings POOL_SETTINGS;
+    // Everything in db.properties, for optional settings read elsewhere (see longProperty)
+    private static final Properties PROPERTIES;
+
+    // Made on first use, as the database may not exist until createDatabase has run
+    private static volatile ConnectionPool pool;
 
     /*
      * Load the database configuration from the db.properties file.
@@ -20,14 +26,28 @@ public class DatabaseManager {
                 }
                 Properties props = new Properties();
                 props.load(propStream);
+                PROPERTIES = props;
                 DATABASE_NAME = props.getProperty("db.name");
                 USER = props.getProperty("db.user");
                 PASSWORD = props.getProperty("db.password");
 
                 var host = props.getProperty("db.host");
                 var port = Integer.parseInt(props.getProperty("db.port"));
+                // Server-side prepares let MySQL parse and plan each statement once; the pool keeps
+                // statements open per connection (db.pool.statementCacheSize) so that actually pays off
+                var useServerPrepStmts = Boolean.parseBoolean(props.getProperty("db.useServerPrepStmts", "true"));
                 // The connection URL for MySQL (without specifying a database yet)
-                CONNECTION_URL = String.format("jdbc:mysql://%s:%d", host, port);
+                CONNECTION_URL = String.format("jdbc:mysql://%s:%d?useServerPrepStmts=%b", host, port, useServerPrepStmts);
+
+                // Pool settings are optional; times are in milliseconds
+                POOL_SETTINGS = new ConnectionPool.Settings(
+                        Integer.parseInt(props.getProperty("db.pool.minSize", "2")),
+                        Integer.parseInt(props.getProperty("db.pool.maxSize", "10")),
+                        Long.parseLong(props.getProperty("db.pool.maxWait", "5000")),
+                        Long.parseLong(props.getProperty("db.pool.idleTimeout", "600000")),
+                        Long.parseLong(props.getProperty("db.pool.maxLifetime", "1800000")),
+                        Long.parseLong(props.getProperty("db.pool.validateAfter", "500")),
+                        Integer.parseInt(props.getProperty("db.pool.statementCacheSize", "32")));
             }
         } catch (Exception ex) {
             throw new RuntimeException("Unable to process db.properties. " + ex.getMessage());
@@ -50,17 +70,60 @@ public class DatabaseManager {
     }
 
     /**
-     * Creates and returns a connection to the database.
-     * Use a try-with-resources block to ensure connections are closed.
+     * @return the named setting from db.properties as a number, or defaultValue if it isn't set
+     */
+    public static long longProperty(String name, long defaultValue) {
+        String value = PROPERTIES.getProperty(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Borrows a connection to the database from the connection pool.
+     * Use a try-with-resources block to ensure connections are closed, which returns them to the pool.
      */
     public static Connection getConnection() throws DataAccessException {
         try {
-            var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
-            // Set the connection to use the specified database.
-            conn.setCatalog(DATABASE_NAME);
-            return conn;
+            return pool().borrow();
         } catch (SQLException e) {
             throw new DataAccessException(e.getMessage());
         }
     }
+
+    /**
+     * @return connection pool counts and wait times
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return pool().stats();
+    }
+
+    /**
+     * Closes the pooled connections. The next getConnection starts a new pool.
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool pool() {
+        ConnectionPool current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (DatabaseManager.class) {
+            if (pool == null) {
+                pool = new ConnectionPool(DatabaseManager::openConnection, POOL_SETTINGS);
+            }
+            return pool;
+        }
+    }
+
+    // A new physical connection for the pool
+    private static Connection openConnection() throws SQLException {
+        var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
+        // Set the connection to use the specified database.
+        conn.setCatalog(DATABASE_NAME);
+        return conn;
+    }
 }
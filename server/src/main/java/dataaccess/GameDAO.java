@@ -1,30 +1,44 @@
 package dataaccess;
 
 import model.GameData;
+import model.GameInfo;
 import chess.ChessGame;
-import com.google.gson.Gson;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.InvalidMoveException;
+import chess.LegacyGameJson;
+import chess.PackedMove;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class GameDAO {
 
-    private final Gson gson = new Gson();
+    // Each move is one row in game_move. The game row holds a snapshot of the game as of snapshotPly,
+    // rewritten every this many moves (and whenever updateGame is called), so a game is rebuilt by
+    // replaying at most this many moves on top of its snapshot
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    // Runs between listGames' game and move queries, so tests can write in between
+    Runnable betweenListReads = () -> { };
 
     // Create a new game and return its auto-generated gameID.
     public int createGame(String gameName) throws DataAccessException {
         String sql = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameState) VALUES (?, ?, ?, ?)";
         // Initially, both white and black usernames are null.
-        // For the game state, we'll store a serialized ChessGame.
+        // For the game state, we'll store an encoded ChessGame.
         ChessGame newGame = new ChessGame(); // assuming a default constructor exists
-        String gameState = gson.toJson(newGame);
+        byte[] gameState = GameCodec.encode(newGame);
 
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, null);
             stmt.setString(2, null);
             stmt.setString(3, gameName);
-            stmt.setString(4, gameState);
+            stmt.setBytes(4, gameState);
             stmt.executeUpdate();
 
             try (ResultSet keys = stmt.getGeneratedKeys()) {
@@ -42,22 +56,37 @@ public class GameDAO {
     // Retrieve a game by gameID.
     public GameData getGame(int gameID) throws DataAccessException {
         String sql = "SELECT * FROM game WHERE gameID = ?";
+        String movesSql = "SELECT ply, move FROM game_move WHERE gameID = ? AND ply >= ? ORDER BY ply";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, gameID);
+            GameData game;
+            int snapshotPly;
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    int id = rs.getInt("gameID");
-                    String whiteUsername = rs.getString("whiteUsername");
-                    String blackUsername = rs.getString("blackUsername");
-                    String gameName = rs.getString("gameName");
-                    String gameState = rs.getString("gameState");
-                    // Deserialize the JSON string back into a ChessGame object.
-                    ChessGame chessGame = gson.fromJson(gameState, ChessGame.class);
-                    return new GameData(id, whiteUsername, blackUsername, gameName, chessGame);
+                if (!rs.next()) {
+                    return null;
+                }
+                int id = rs.getInt("gameID");
+                String whiteUsername = rs.getString("whiteUsername");
+                String blackUsername = rs.getString("blackUsername");
+                String gameName = rs.getString("gameName");
+                // Decode the stored snapshot back into a ChessGame object.
+                ChessGame chessGame = decodeGame(rs.getBytes("gameState"));
+                snapshotPly = rs.getInt("snapshotPly");
+                game = new GameData(id, whiteUsername, blackUsername, gameName, chessGame);
+            }
+
+            // Then play the moves made since the snapshot
+            try (PreparedStatement movesStmt = conn.prepareStatement(movesSql)) {
+                movesStmt.setInt(1, gameID);
+                movesStmt.setInt(2, snapshotPly);
+                try (ResultSet rs = movesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        replayMove(game, rs.getInt("ply"), rs.getInt("move"));
+                    }
                 }
-                return null;
             }
+            return game;
         } catch (SQLException e) {
             throw new DataAccessException("Error retrieving game: " + e.getMessage());
         }
@@ -66,18 +95,61 @@ public class GameDAO {
     // List all games, returning a Map of gameID to GameData.
     public Map<Integer, GameData> listGames() throws DataAccessException {
         String sql = "SELECT * FROM game";
+        // Every game's moves since its snapshot, in one query rather than one per game
+        String movesSql = """
+                SELECT m.gameID, m.ply, m.move FROM game_move m JOIN game g ON g.gameID = m.gameID
+                WHERE m.ply >= g.snapshotPly ORDER BY m.gameID, m.ply""";
         Map<Integer, GameData> games = new HashMap<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             PreparedStatement movesStmt = conn.prepareStatement(movesSql)) {
+            // Both queries read from one repeatable-read transaction, so a snapshot addMove writes in
+            // between can't move snapshotPly past moves the first query's snapshots still need
+            int isolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("gameID");
+                        String whiteUsername = rs.getString("whiteUsername");
+                        String blackUsername = rs.getString("blackUsername");
+                        String gameName = rs.getString("gameName");
+                        ChessGame chessGame = decodeGame(rs.getBytes("gameState"));
+                        games.put(id, new GameData(id, whiteUsername, blackUsername, gameName, chessGame));
+                    }
+                }
+                betweenListReads.run();
+                try (ResultSet rs = movesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        GameData game = games.get(rs.getInt("gameID"));
+                        if (game != null) {
+                            replayMove(game, rs.getInt("ply"), rs.getInt("move"));
+                        }
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(isolation);
+            }
+            return games;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error listing games: " + e.getMessage());
+        }
+    }
+
+    // List every game's ID, players and name, in ID order. Reads only those columns, never the game
+    // state or its moves, so it stays cheap however many games there are.
+    public List<GameInfo> listGameInfo() throws DataAccessException {
+        String sql = "SELECT gameID, whiteUsername, blackUsername, gameName FROM game ORDER BY gameID";
+        List<GameInfo> games = new ArrayList<>();
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                int id = rs.getInt("gameID");
-                String whiteUsername = rs.getString("whiteUsername");
-                String blackUsername = rs.getString("blackUsername");
-                String gameName = rs.getString("gameName");
-                String gameState = rs.getString("gameState");
-                ChessGame chessGame = gson.fromJson(gameState, ChessGame.class);
-                games.put(id, new GameData(id, whiteUsername, blackUsername, gameName, chessGame));
+                games.add(new GameInfo(rs.getInt("gameID"), rs.getString("whiteUsername"),
+                        rs.getString("blackUsername"), rs.getString("gameName")));
             }
             return games;
         } catch (SQLException e) {
@@ -85,18 +157,19 @@ public class GameDAO {
         }
     }
 
-    // Update an existing game record.
+    // Update an existing game record. This also snapshots the game; moves go through addMove instead.
     public void updateGame(GameData game) throws DataAccessException {
-        String sql = "UPDATE game SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameState = ? WHERE gameID = ?";
-        // Serialize the ChessGame object to JSON.
-        String gameState = gson.toJson(game.getGame());
+        String sql = "UPDATE game SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameState = ?, snapshotPly = ? WHERE gameID = ?";
+        // Encode the ChessGame object.
+        byte[] gameState = GameCodec.encode(game.getGame());
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, game.getWhiteUsername());
             stmt.setString(2, game.getBlackUsername());
             stmt.setString(3, game.getGameName());
-            stmt.setString(4, gameState);
-            stmt.setInt(5, game.getGameID());
+            stmt.setBytes(4, gameState);
+            stmt.setInt(5, game.getGame().getPly());
+            stmt.setInt(6, game.getGameID());
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected == 0) {
                 throw new DataAccessException("No game updated, game not found.");
@@ -106,11 +179,96 @@ public class GameDAO {
         }
     }
 
+    // Records a move that has just been made on the game: one small insert, plus a snapshot of the game
+    // every SNAPSHOT_INTERVAL moves. The insert fails if another move already took this ply.
+    public void addMove(int gameID, ChessGame gameAfterMove, ChessMove move) throws DataAccessException {
+        String sql = "INSERT INTO game_move (gameID, ply, move) VALUES (?, ?, ?)";
+        String snapshotSql = "UPDATE game SET gameState = ?, snapshotPly = ? WHERE gameID = ?";
+        int ply = gameAfterMove.getPly() - 1;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, gameID);
+                stmt.setInt(2, ply);
+                stmt.setInt(3, PackedMove.of(move));
+                stmt.executeUpdate();
+            }
+            // The move is already safe in the log, so a snapshot that fails only means a longer replay
+            if ((ply + 1) % SNAPSHOT_INTERVAL == 0) {
+                try (PreparedStatement stmt = conn.prepareStatement(snapshotSql)) {
+                    stmt.setBytes(1, GameCodec.encode(gameAfterMove));
+                    stmt.setInt(2, ply + 1);
+                    stmt.setInt(3, gameID);
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error adding move: " + e.getMessage());
+        }
+    }
+
+    // Plays a logged move on a game rebuilt from its snapshot, going through makeMove so the repetition
+    // history and status come out the same as when the move was first made
+    private static void replayMove(GameData game, int ply, int move) throws DataAccessException {
+        ChessGame chessGame = game.getGame();
+        if (ply != chessGame.getPly()) {
+            throw new DataAccessException("Move log for game " + game.getGameID() + " is missing ply " + chessGame.getPly());
+        }
+        try {
+            chessGame.makeMove(PackedMove.toChessMove(move));
+        } catch (InvalidMoveException e) {
+            throw new DataAccessException("Move log for game " + game.getGameID() + " has an invalid move at ply " + ply);
+        }
+    }
+
+    // Rewrites every game still stored as JSON in the binary format, returning how many were converted.
+    // Reading works either way, so this can run whenever; the server does it once at startup.
+    public int migrateJsonGames() throws DataAccessException {
+        String select = "SELECT gameID, gameState FROM game";
+        String update = "UPDATE game SET gameState = ?, snapshotPly = ? WHERE gameID = ?";
+        int migrated = 0;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement selectStmt = conn.prepareStatement(select);
+             PreparedStatement updateStmt = conn.prepareStatement(update);
+             ResultSet rs = selectStmt.executeQuery()) {
+            while (rs.next()) {
+                byte[] gameState = rs.getBytes("gameState");
+                if (gameState == null || GameCodec.isEncoded(gameState)) {
+                    continue;
+                }
+                ChessGame chessGame = decodeGame(gameState);
+                updateStmt.setBytes(1, GameCodec.encode(chessGame));
+                updateStmt.setInt(2, chessGame.getPly());
+                updateStmt.setInt(3, rs.getInt("gameID"));
+                updateStmt.addBatch();
+                migrated++;
+            }
+            if (migrated > 0) {
+                updateStmt.executeBatch();
+            }
+            return migrated;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error migrating games: " + e.getMessage());
+        }
+    }
+
+    // Binary game state, or JSON from before the binary format
+    private ChessGame decodeGame(byte[] gameState) {
+        if (gameState == null) {
+            return null;
+        }
+        if (GameCodec.isEncoded(gameState)) {
+            return GameCodec.decode(gameState);
+        }
+        return LegacyGameJson.read(new String(gameState, StandardCharsets.UTF_8));
+    }
+
     // Clear all games.
     public void clear() throws DataAccessException {
         String sql = "DELETE FROM game";
         try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement movesStmt = conn.prepareStatement("DELETE FROM game_move");
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            movesStmt.executeUpdate();
             stmt.executeUpdate();
         } catch (SQLException e) {
             throw new DataAccessException("Error clearing games: " + e.getMessage());
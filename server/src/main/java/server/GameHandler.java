@@ -8,7 +8,7 @@ import spark.Request;
 import spark.Response;
 import service.GameService;
 import java.util.List;
-import java.util.stream.Collectors;
+import chess.Trace;
 
 public class GameHandler {
     private final GameService gameService; // From the file GameService
@@ -23,10 +23,8 @@ public class GameHandler {
     public Object handleListGames(Request req, Response res) {
         try {
             String authToken = req.headers("Authorization");
-            List<GameData> gameDataList = gameService.listGames(authToken);
-            List<GameInfo> games = gameDataList.stream()
-                    .map(g -> new GameInfo(g.getGameID(), g.getWhiteUsername(), g.getBlackUsername(), g.getGameName()))
-                    .collect(Collectors.toList());
+            // Only the listing columns are read; no game state is loaded
+            List<GameInfo> games = gameService.listGameInfo(authToken);
 
             res.status(200);
             return gson.toJson(new ListGamesResponse(games));
@@ -141,7 +139,9 @@ public class GameHandler {
 
     // This just makes highlighting moves and such easier
     public Object handleGetFullGameState(Request req, Response res) {
-        System.out.println("HandleF");
+        if (Trace.ENABLED) {
+            Trace.log("HandleF");
+        }
         try {
             String authToken = req.headers("Authorization");
             int gameId = Integer.parseInt(req.queryParams("gameID"));
@@ -149,7 +149,9 @@ public class GameHandler {
             // Retrieve the full game state from GameService. Assume it returns a ChessGame.
             ChessGame game = gameService.getFullGameState(gameId);
 
-            System.out.println("In Game Handler, turn is " + game.getTeamTurn());
+            if (Trace.ENABLED) {
+                Trace.log("In Game Handler, turn is " + game.getTeamTurn());
+            }
             res.status(200);
             return gson.toJson(game);
         } catch (Exception e) {
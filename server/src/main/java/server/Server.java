@@ -7,14 +7,20 @@ import service.ClearService;
 import dataaccess.UserDAO;
 import dataaccess.GameDAO;
 import dataaccess.AuthDAO;
+import dataaccess.AuthSweeper;
 import dataaccess.DatabaseManager;
 import dataaccess.DataAccessException;
 import spark.Spark;
 import server.websocket.GameWebSocket;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 
 
 public class Server {
+    private AuthSweeper authSweeper;
+
     public int run(int desiredPort) {
         Spark.stop();
         try { Thread.sleep(500); } catch (InterruptedException ignored) {}
@@ -45,13 +51,43 @@ public class Server {
                     whiteUsername VARCHAR(255),
                     blackUsername VARCHAR(255),
                     gameName VARCHAR(255),
-                    gameState TEXT
+                    gameState BLOB,
+                    snapshotPly INT NOT NULL DEFAULT 0
+                )""");
+                // Tables made before the binary game format still have a TEXT column; their JSON
+                // rows are converted below. Only change the column while it is still text, so a normal
+                // start doesn't run DDL against the game table
+                String gameStateType = columnType(conn, "game", "gameState");
+                if (gameStateType != null && gameStateType.toUpperCase().contains("TEXT")) {
+                    stmt.executeUpdate("ALTER TABLE game MODIFY gameState BLOB");
+                }
+                // ...and no snapshotPly
+                addColumnIfMissing(conn, "game", "snapshotPly", "snapshotPly INT NOT NULL DEFAULT 0");
+                // One row per move made, appended and never changed (see GameDAO.addMove)
+                stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS game_move (
+                    gameID INT NOT NULL,
+                    ply INT NOT NULL,
+                    move INT NOT NULL,
+                    playedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                    PRIMARY KEY (gameID, ply)
                 )""");
                 stmt.executeUpdate("""
                 CREATE TABLE IF NOT EXISTS auth (
                     authToken VARCHAR(255) NOT NULL PRIMARY KEY,
-                    username VARCHAR(255) NOT NULL
+                    username VARCHAR(255) NOT NULL,
+                    issuedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                    lastUsedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                    INDEX auth_issuedAt (issuedAt),
+                    INDEX auth_lastUsedAt (lastUsedAt)
                 )""");
+                // Tokens from before expiry count as issued now
+                addColumnIfMissing(conn, "auth", "issuedAt", """
+                        issuedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                        ADD INDEX auth_issuedAt (issuedAt)""");
+                addColumnIfMissing(conn, "auth", "lastUsedAt", """
+                        lastUsedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+                        ADD INDEX auth_lastUsedAt (lastUsedAt)""");
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -61,6 +97,21 @@ public class Server {
         UserDAO userDAO = new UserDAO();
         GameDAO gameDAO = new GameDAO();
         AuthDAO authDAO = new AuthDAO();
+        try {
+            int migrated = gameDAO.migrateJsonGames();
+            if (migrated > 0) {
+                System.out.println("Converted " + migrated + " games from JSON to the binary format");
+            }
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+        }
+
+        // Delete expired auth tokens every few minutes, in small batches
+        if (authSweeper != null) {
+            authSweeper.close(); // Left from an earlier run without a stop
+        }
+        authSweeper = new AuthSweeper(authDAO, (int) DatabaseManager.longProperty("auth.sweepBatchSize", 500));
+        authSweeper.start(DatabaseManager.longProperty("auth.sweepInterval", 300));
 
         UserService userService = new UserService(userDAO, authDAO);
         GameService gameService = new GameService(gameDAO, authDAO);
@@ -89,7 +140,30 @@ public class Server {
         return Spark.port();
     }
 
+    // The column's SQL type name, e.g. TEXT or BLOB, or null if the table has no such column
+    private static String columnType(Connection conn, String table, String column) throws SQLException {
+        try (var columns = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            return columns.next() ? columns.getString("TYPE_NAME") : null;
+        }
+    }
+
+    // Adds a column to a table made by an older version of the server. MySQL has no
+    // ADD COLUMN IF NOT EXISTS, so look first
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition)
+            throws SQLException {
+        if (columnType(conn, table, column) == null) {
+            try (var stmt = conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + definition);
+            }
+        }
+    }
+
     public void stop() {
         Spark.stop();
+        if (authSweeper != null) {
+            authSweeper.close();
+            authSweeper = null;
+        }
+        DatabaseManager.closePool();
     }
 }
@@ -9,6 +9,7 @@ import model.RegisterResponse;
 import spark.Request;
 import spark.Response;
 import service.UserService;
+import chess.Trace;
 
 // WORKING VERSION, DON't CHANGE (for now)
 public class UserHandler {
@@ -20,7 +21,9 @@ public class UserHandler {
     }
 
     public Object handleRegister(Request req, Response res) {
-        System.out.println("Register request body: " + req.body() + "\n");
+        if (Trace.ENABLED) {
+            Trace.log("Register request received");
+        }
         try {
             RegisterRequest registerRequest = gson.fromJson(req.body(), RegisterRequest.class);
             String authToken = userService.registerUser(
@@ -43,12 +46,11 @@ public class UserHandler {
 
 
     public Object handleLogin(Request req, Response res) {
-        System.out.println("Login request body: " + req.body() + "\n");
         try {
-            System.out.println("Login request body: " + req.body());
             LoginRequest loginRequest = gson.fromJson(req.body(), LoginRequest.class);
-            System.out.println("Deserialized loginRequest: username=" + loginRequest.username()
-                    + ", password=" + loginRequest.password());
+            if (Trace.ENABLED) {
+                Trace.log("Deserialized loginRequest: username=" + loginRequest.username());
+            }
             String authToken = userService.loginUser(loginRequest.username(), loginRequest.password());
             res.status(200);
             return gson.toJson(new LoginResponse(authToken, loginRequest.username()));
@@ -3,6 +3,7 @@ package server.websocket;
 import org.eclipse.jetty.websocket.api.Session;
 
 import java.io.IOException;
+import chess.Trace;
 
 public class Connection {
     public String visitorName;
@@ -15,6 +16,8 @@ public class Connection {
 
     public void send(String message) throws IOException {
         session.getRemote().sendString(message);
-        System.out.println("📨 Sent to " + visitorName + ": " + message);
+        if (Trace.ENABLED) {
+            Trace.log("📨 Sent to " + visitorName + ": " + message);
+        }
     }
 }
\ No newline at end of file
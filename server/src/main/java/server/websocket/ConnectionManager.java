@@ -8,6 +8,7 @@ import websocket.messages.ServerMessage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
+import chess.Trace;
 
 public class ConnectionManager {
 
@@ -33,7 +34,9 @@ public class ConnectionManager {
 
     // Broadcast a message to all connections in a game, optionally excluding one username.
     public void broadcast(int gameId, String excludeUsername, ChessNotification notification) throws IOException {
-        System.out.println("Broadcasting to " + gameId + " excluding " + excludeUsername);
+        if (Trace.ENABLED) {
+            Trace.log("Broadcasting to " + gameId + " excluding " + excludeUsername);
+        }
         if (!gameConnections.containsKey(gameId)) {return;}
 
         String json = new Gson().toJson(notification);
@@ -42,10 +45,14 @@ public class ConnectionManager {
 
         for (var conn : connections.values()) {
             if (conn.session.isOpen()) {
-                System.out.println("Comparing " + conn.visitorName + " to " + excludeUsername);
+                if (Trace.ENABLED) {
+                    Trace.log("Comparing " + conn.visitorName + " to " + excludeUsername);
+                }
                 if (!conn.visitorName.equals(excludeUsername)) {
-                    System.out.println("** Sending notification to " + conn.visitorName);
-                    System.out.println("** JSON: " + json);
+                    if (Trace.ENABLED) {
+                        Trace.log("** Sending notification to " + conn.visitorName);
+                        Trace.log("** JSON: " + json);
+                    }
                     conn.send(json);
                 }
             } else {
@@ -15,6 +15,7 @@ import websocket.messages.ChessNotification;
 import java.io.IOException;
 import service.GameService;
 import websocket.messages.ServerMessage;
+import chess.Trace;
 
 @WebSocket
 public class GameWebSocket {
@@ -30,9 +31,13 @@ public class GameWebSocket {
 
     @OnWebSocketMessage
     public void onMessage(Session session, String message) throws IOException {
-        System.out.println("🧪 Raw WebSocket message: " + message);
+        if (Trace.ENABLED) {
+            Trace.log("🧪 Raw WebSocket message: " + message);
+        }
         ChessAction action = new Gson().fromJson(message, ChessAction.class);
-        System.out.println("Parsed action type: " + action.getType());
+        if (Trace.ENABLED) {
+            Trace.log("Parsed action type: " + action.getType());
+        }
         switch (action.getType()) {
             case JOIN:
                 joinGame(action, session);
@@ -66,7 +71,9 @@ public class GameWebSocket {
         //Server Message
         String msg = "You joined game " + displayNumber + " as " + role;
         ServerMessage loadGameMsg = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, game, msg);
-        System.out.println("🔔 Sending LOAD_GAME message to new player: " + username);
+        if (Trace.ENABLED) {
+            Trace.log("🔔 Sending LOAD_GAME message to new player: " + username);
+        }
         CONNECTIONS.sendTo(gameId, username, loadGameMsg);
 
         // Chess notification
@@ -74,7 +81,9 @@ public class GameWebSocket {
                 ChessNotification.NotificationType.PLAYER_JOINED,
                 username + " joined game " + displayNumber + " as " + role
         );
-        System.out.println("🔔 Sending PLAYER_JOINED notification everyone except: " + username);
+        if (Trace.ENABLED) {
+            Trace.log("🔔 Sending PLAYER_JOINED notification everyone except: " + username);
+        }
         CONNECTIONS.broadcast(gameId, username, playerNotification);
     }
 
@@ -97,6 +106,16 @@ public class GameWebSocket {
                     moveMessage
             );
             CONNECTIONS.broadcast(gameId, notification);
+            ChessGame.GameStatus status = updatedGame.getStatus();
+            if (status.isTerminal()) {
+                String result = switch (status) {
+                    case CHECKMATE -> "checkmate, " + username + " wins";
+                    case STALEMATE -> "stalemate";
+                    default -> "draw by " + updatedGame.getDrawReason().name().toLowerCase().replace('_', ' ');
+                };
+                CONNECTIONS.broadcast(gameId, new ChessNotification(
+                        ChessNotification.NotificationType.MOVE_MADE, "Game over: " + result));
+            }
 
             // ✅ Broadcast the new board state as a raw ServerMessage
             ServerMessage loadGameMessage = new ServerMessage(
@@ -9,11 +9,13 @@ import dataaccess.GameDAO;
 import dataaccess.DataAccessException;
 import model.AuthData;
 import model.GameData;
+import model.GameInfo;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import chess.Trace;
 
 public class GameService {
     private final GameDAO gameDAO;
@@ -61,6 +63,24 @@ public class GameService {
         }
     }
 
+    // List every game's ID, players and name (with auth check), without loading any game state
+    public List<GameInfo> listGameInfo(String authToken) {
+        AuthData auth;
+        try {
+            auth = authDAO.getAuth(authToken);
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Error checking auth token: " + e.getMessage(), e);
+        }
+        if (auth == null) {
+            throw new IllegalArgumentException("Invalid auth token.");
+        }
+        try {
+            return gameDAO.listGameInfo();
+        } catch (DataAccessException e) {
+            throw new RuntimeException("Error listing games: " + e.getMessage(), e);
+        }
+    }
+
     public void joinGame(String authToken, int gameID, boolean joinAsWhite) {
         AuthData auth;
         try {
@@ -125,13 +145,17 @@ public class GameService {
     }
 
     public ChessGame getFullGameState(int gameID) {
-        System.out.println("getFullGameState called");
+        if (Trace.ENABLED) {
+            Trace.log("getFullGameState called");
+        }
         try {
             ChessGame game = gameDAO.getGame(gameID).getGame();
             if (game == null) {
                 throw new IllegalArgumentException("Game not found.");
             }
-            System.out.println("In Game Service, turn is " + game.getTeamTurn());
+            if (Trace.ENABLED) {
+                Trace.log("In Game Service, turn is " + game.getTeamTurn());
+            }
             return game;
         } catch (DataAccessException e) {
             throw new RuntimeException("Error fetching game state: " + e.getMessage(), e);
@@ -167,7 +191,7 @@ public class GameService {
             // Parse move (e.g., "e2e4" => ChessMove)
             ChessPosition start = parsePosition(moveStr.substring(0, 2));
             ChessPosition end = parsePosition(moveStr.substring(2, 4));
-            ChessMove move = new ChessMove(start, end, null); // No promotion support yet
+            ChessMove move = ChessMove.of(start, end, null); // No promotion support yet
 
             // Validate the move is legal
             Collection<ChessMove> legalMoves = chessGame.validMoves(start);
@@ -178,8 +202,12 @@ public class GameService {
             // Apply the move
             chessGame.makeMove(move);
 
-            // Save updated game to DB using the shared gameDAO (not a new one)
-            gameDAO.updateGame(gameData); // Use the same instance you just modified
+            // Save just the move to DB using the shared gameDAO (not a new one)
+            gameDAO.addMove(gameId, chessGame, move);
+            if (chessGame.getStatus().isTerminal()) {
+                chessGame.setGameOver(true); // Mated, stalemated or drawn; also stops games that would go on forever
+                gameDAO.updateGame(gameData); // Game over is part of the snapshot, not the move log
+            }
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to make move: " + e.getMessage(), e);
@@ -191,7 +219,7 @@ public class GameService {
         char colChar = Character.toLowerCase(pos.charAt(0));
         int col = colChar - 'a' + 1;
         int row = Character.getNumericValue(pos.charAt(1));
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
     }
 
 
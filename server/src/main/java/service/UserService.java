@@ -5,6 +5,7 @@ import dataaccess.DataAccessException;
 import dataaccess.UserDAO;
 import model.UserData;
 import org.mindrot.jbcrypt.BCrypt;
+import chess.Trace;
 
 public class UserService {
     private final UserDAO userDAO;
@@ -42,12 +43,15 @@ public class UserService {
         try {
             UserData user = userDAO.getUser(username);
             if (user == null) {
-                System.out.println("User not found: " + username);
+                if (Trace.ENABLED) {
+                    Trace.log("User not found: " + username);
+                }
                 throw new IllegalArgumentException("Invalid username or password.");
             }
-            System.out.println("Stored hash for " + username + ": " + user.getPassword());
             boolean valid = BCrypt.checkpw(password, user.getPassword());
-            System.out.println("BCrypt.checkpw result: " + valid);
+            if (Trace.ENABLED) {
+                Trace.log("BCrypt.checkpw result for " + username + ": " + valid);
+            }
             if (!valid) {
                 throw new IllegalArgumentException("Invalid username or password.");
             }
@@ -0,0 +1,135 @@
+package dataaccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import model.AuthData;
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Uses a map and a hand-moved clock in place of the database and time
+public class AuthCacheTest {
+
+    private final Map<String, String> database = new HashMap<>();
+    private int loads = 0;
+    private long now = 0;
+    private AuthCache cache;
+
+    private AuthData load(String token) {
+        loads++;
+        String username = database.get(token);
+        return username == null ? null : new AuthData(token, username);
+    }
+
+    private AuthData get(String token) throws DataAccessException {
+        return cache.get(token, this::load);
+    }
+
+    private void advanceMillis(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        cache = new AuthCache(2, 1000, 2, 100, () -> now);
+        database.put("a", "alice");
+        database.put("b", "bob");
+        database.put("c", "carol");
+    }
+
+    @Test
+    @DisplayName("Test Token Is Loaded Once")
+    public void testTokenIsLoadedOnce() throws Exception {
+        assertEquals("alice", get("a").getUsername());
+        assertEquals("alice", get("a").getUsername());
+        assertEquals(1, loads, "Second lookup should come from the cache");
+        AuthCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    @DisplayName("Test Token Expires After TTL")
+    public void testTokenExpires() throws Exception {
+        get("a");
+        advanceMillis(999);
+        get("a");
+        assertEquals(1, loads, "Token should still be cached");
+        advanceMillis(1);
+        get("a");
+        assertEquals(2, loads, "Token past its TTL should be loaded again");
+    }
+
+    @Test
+    @DisplayName("Test Unknown Token Is Cached Briefly")
+    public void testUnknownTokenIsCached() throws Exception {
+        assertNull(get("nope"));
+        assertNull(get("nope"));
+        assertEquals(1, loads, "Unknown token should be remembered");
+        assertEquals(1, cache.stats().negativeHits());
+        advanceMillis(100);
+        assertNull(get("nope"));
+        assertEquals(2, loads, "Unknown token should be forgotten after its TTL");
+    }
+
+    @Test
+    @DisplayName("Test Least Recently Used Token Is Evicted")
+    public void testEviction() throws Exception {
+        get("a");
+        get("b");
+        get("a"); // Now b is the oldest
+        get("c");
+        assertEquals(2, cache.stats().size(), "Cache should stay at its size");
+        loads = 0;
+        get("a");
+        get("c");
+        assertEquals(0, loads, "Recently used tokens should stay");
+        get("b");
+        assertEquals(1, loads, "Least recently used token should have been dropped");
+    }
+
+    @Test
+    @DisplayName("Test Bad Tokens Don't Push Out Good Ones")
+    public void testBadTokensDontEvictGoodOnes() throws Exception {
+        get("a");
+        for (int i = 0; i < 10; i++) {
+            get("bad" + i);
+        }
+        loads = 0;
+        get("a");
+        assertEquals(0, loads, "Valid token should survive a flood of bad ones");
+        assertEquals(2, cache.stats().negativeSize(), "Unknown tokens should stay bounded");
+    }
+
+    @Test
+    @DisplayName("Test Invalidate")
+    public void testInvalidate() throws Exception {
+        get("a");
+        database.remove("a");
+        cache.invalidate("a");
+        assertNull(get("a"), "Invalidated token should be looked up again");
+
+        database.put("a", "alice");
+        cache.put(new AuthData("a", "alice"));
+        assertEquals("alice", get("a").getUsername(), "Put should replace the cached unknown token");
+
+        cache.invalidateAll();
+        assertEquals(0, cache.stats().size(), "Everything should be forgotten");
+    }
+
+    @Test
+    @DisplayName("Test Lookup Racing Invalidation Isn't Cached")
+    public void testLookupRacingInvalidation() throws Exception {
+        // The token is deleted while its lookup is still reading the old row
+        AuthData auth = cache.get("a", token -> {
+            AuthData old = load(token);
+            cache.invalidate(token);
+            return old;
+        });
+        assertNotNull(auth);
+        database.remove("a");
+        assertNull(get("a"), "Row read before the invalidation shouldn't be cached");
+    }
+}
@@ -5,6 +5,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import model.AuthData;
 import org.junit.jupiter.api.*;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class AuthDAOTest {
 
@@ -74,6 +78,57 @@ public class AuthDAOTest {
         assertDoesNotThrow(() -> authDAO.deleteAuth("nonExistentToken"), "Deleting a non-existent token should not throw an exception");
     }
 
+    @Test
+    @DisplayName("Test Delete Expired Tokens In Batches")
+    public void testDeleteExpiredInBatches() throws Exception {
+        String fresh = authDAO.createAuth("freshUser");
+        for (int i = 0; i < 3; i++) {
+            age(authDAO.createAuth("oldUser" + i), "lastUsedAt");
+        }
+        age(authDAO.createAuth("ancientUser"), "issuedAt");
+
+        assertEquals(3, authDAO.deleteExpired(3), "Batch should stop at the limit");
+        assertEquals(1, authDAO.deleteExpired(3), "Rest should go in the next batch");
+        assertEquals(0, authDAO.deleteExpired(3), "Nothing expired should be left");
+        assertEquals(1, countTokens(), "Fresh token should be kept");
+        assertNotNull(authDAO.getAuth(fresh), "Fresh token should still work");
+    }
+
+    @Test
+    @DisplayName("Test Sweeper Deletes All Expired Tokens")
+    public void testSweeper() throws Exception {
+        String cached = authDAO.createAuth("oldUser");
+        age(cached, "lastUsedAt");
+        for (int i = 0; i < 4; i++) {
+            age(authDAO.createAuth("oldUser" + i), "lastUsedAt");
+        }
+        authDAO.createAuth("freshUser");
+        try (AuthSweeper sweeper = new AuthSweeper(authDAO, 2)) {
+            assertEquals(5, sweeper.sweep(), "Sweep should go on until a batch comes back short");
+        }
+        assertEquals(1, countTokens(), "Only the fresh token should be left");
+        assertNull(authDAO.getAuth(cached), "Swept token shouldn't still work from the cache");
+    }
+
+    // Moves a token's timestamp a year back, past any expiry
+    private static void age(String token, String column) throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "UPDATE auth SET " + column + " = NOW(3) - INTERVAL 365 DAY WHERE authToken = ?")) {
+            stmt.setString(1, token);
+            assertEquals(1, stmt.executeUpdate(), "Token row should exist");
+        }
+    }
+
+    private static int countTokens() throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM auth");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
 
 
 }
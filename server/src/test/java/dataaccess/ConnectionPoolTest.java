@@ -0,0 +1,411 @@
+package dataaccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs against stand-in connections, so it doesn't need MySQL
+public class ConnectionPoolTest {
+
+    // A stand-in for a physical statement that only knows whether it's open
+    private static class FakeStatement {
+        boolean closed = false;
+        boolean failClear = false;
+        int clears = 0;
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "clearParameters" -> {
+                            if (failClear) {
+                                throw new SQLException("Clear failed");
+                            }
+                            clears++;
+                            yield null;
+                        }
+                        case "executeUpdate" -> {
+                            if (closed) {
+                                throw new SQLException("Statement is closed");
+                            }
+                            yield 1;
+                        }
+                        default -> null;
+                    });
+        }
+    }
+
+    // A stand-in for a physical connection that only knows whether it's open and valid, and what it prepared
+    private static class FakeConnection {
+        boolean closed = false;
+        boolean valid = true;
+        int validations = 0;
+        final List<FakeStatement> statements = new ArrayList<>();
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> {
+                            validations++;
+                            yield valid;
+                        }
+                        case "getAutoCommit" -> true;
+                        case "prepareStatement" -> {
+                            FakeStatement statement = new FakeStatement();
+                            statements.add(statement);
+                            yield statement.proxy();
+                        }
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default -> null;
+                    });
+        }
+    }
+
+    private final List<FakeConnection> physical = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool newPool(int minSize, int maxSize, long maxWait, long idleTimeout, long maxLifetime,
+                                   long validateAfter) {
+        return newPool(minSize, maxSize, maxWait, idleTimeout, maxLifetime, validateAfter, 4);
+    }
+
+    private ConnectionPool newPool(int minSize, int maxSize, long maxWait, long idleTimeout, long maxLifetime,
+                                   long validateAfter, int statementCacheSize) {
+        ConnectionPool.Settings settings = new ConnectionPool.Settings(minSize, maxSize, maxWait, idleTimeout,
+                maxLifetime, validateAfter, statementCacheSize);
+        // Eviction only runs when the test calls it
+        pool = new ConnectionPool(() -> {
+            FakeConnection connection = new FakeConnection();
+            synchronized (physical) {
+                physical.add(connection);
+            }
+            return connection.proxy();
+        }, settings, Long.MAX_VALUE / 2);
+        return pool;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Test Closed Connections Are Reused")
+    public void testConnectionsAreReused() throws Exception {
+        newPool(0, 2, 1000, 60_000, 60_000, 60_000);
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed(), "Borrowed connection should be open");
+        }
+        try (Connection conn = pool.borrow()) {
+            assertNotNull(conn);
+        }
+        assertEquals(1, physical.size(), "Second borrow should reuse the first connection");
+        assertFalse(physical.get(0).closed, "Returned connection should stay open");
+
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(2, stats.borrows(), "Both borrows should be counted");
+        assertEquals(1, stats.open(), "One connection should be open");
+        assertEquals(1, stats.idle(), "It should be idle");
+    }
+
+    @Test
+    @DisplayName("Test Closed Lease Can't Be Used")
+    public void testClosedLeaseCantBeUsed() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        Connection conn = pool.borrow();
+        conn.close();
+        conn.close(); // Closing twice must not return it twice
+        assertTrue(conn.isClosed(), "Lease should report closed");
+        assertThrows(SQLException.class, () -> conn.prepareStatement("SELECT 1"));
+        assertEquals(1, pool.stats().idle(), "Connection should be back in the pool once");
+    }
+
+    @Test
+    @DisplayName("Test Borrow Times Out When Pool Is Exhausted")
+    public void testBorrowTimesOut() throws Exception {
+        newPool(0, 1, 50, 60_000, 60_000, 60_000);
+        try (Connection held = pool.borrow()) {
+            SQLException ex = assertThrows(SQLException.class, pool::borrow);
+            assertTrue(ex.getMessage().contains("Timed out"), "Expected timeout message");
+            assertFalse(held.isClosed(), "Held connection should stay open");
+        }
+        assertEquals(1, pool.stats().timeouts(), "Timeout should be counted");
+        assertEquals(1, physical.size(), "Pool should not go over maxSize");
+    }
+
+    @Test
+    @DisplayName("Test Waiting Borrower Gets Returned Connection")
+    public void testWaitingBorrowerGetsReturnedConnection() throws Exception {
+        newPool(0, 1, 5000, 60_000, 60_000, 60_000);
+        Connection first = pool.borrow();
+        Thread returner = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                first.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        returner.start();
+        try (Connection second = pool.borrow()) {
+            assertNotNull(second);
+        }
+        returner.join();
+        assertTrue(pool.stats().maxWaitNanos() > 0, "Wait should be recorded");
+        assertEquals(1, physical.size(), "Waiting borrower should get the same connection");
+    }
+
+    @Test
+    @DisplayName("Test Invalid Connection Is Replaced On Borrow")
+    public void testInvalidConnectionIsReplaced() throws Exception {
+        newPool(0, 2, 1000, 60_000, 60_000, 0);
+        pool.borrow().close();
+        physical.get(0).valid = false;
+
+        try (Connection conn = pool.borrow()) {
+            assertNotNull(conn);
+        }
+        assertEquals(1, physical.get(0).validations, "Idle connection should be validated");
+        assertTrue(physical.get(0).closed, "Invalid connection should be closed");
+        assertEquals(2, physical.size(), "A new connection should replace it");
+        assertEquals(1, pool.stats().open(), "Only the new connection should be open");
+    }
+
+    @Test
+    @DisplayName("Test Recently Used Connection Skips Validation")
+    public void testRecentlyUsedConnectionSkipsValidation() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        pool.borrow().close();
+        pool.borrow().close();
+        assertEquals(0, physical.get(0).validations, "Connection used a moment ago shouldn't be checked");
+    }
+
+    @Test
+    @DisplayName("Test Eviction Keeps Minimum Size")
+    public void testEvictionKeepsMinimumSize() throws Exception {
+        newPool(1, 3, 1000, 0, 60_000, 60_000);
+        pool.evict();
+        assertEquals(1, pool.stats().open(), "Eviction should fill the pool to minSize");
+
+        Connection a = pool.borrow();
+        Connection b = pool.borrow();
+        Connection c = pool.borrow();
+        a.close();
+        b.close();
+        c.close();
+        assertEquals(3, pool.stats().idle(), "All three should be idle");
+
+        // idleTimeout is 0, so everything above minSize goes
+        pool.evict();
+        assertEquals(1, pool.stats().open(), "Idle connections above minSize should be closed");
+        assertEquals(2, physical.stream().filter(connection -> connection.closed).count());
+    }
+
+    @Test
+    @DisplayName("Test Connections Retire After Max Lifetime")
+    public void testMaxLifetime() throws Exception {
+        newPool(0, 1, 1000, 60_000, 0, 60_000);
+        pool.borrow().close();
+        assertTrue(physical.get(0).closed, "Connection past its lifetime should be closed when returned");
+        assertEquals(0, pool.stats().open(), "Nothing should be left open");
+    }
+
+    @Test
+    @DisplayName("Test Statements Are Cached Per Connection")
+    public void testStatementsAreCached() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.borrow();
+                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM auth WHERE authToken = ?")) {
+                stmt.setString(1, "token" + i);
+                assertEquals(1, stmt.executeUpdate());
+                assertSame(conn, stmt.getConnection(), "Statement should report the pooled connection");
+            }
+        }
+        List<FakeStatement> prepared = physical.get(0).statements;
+        assertEquals(1, prepared.size(), "SQL should only be prepared once");
+        assertFalse(prepared.get(0).closed, "Cached statement should stay open");
+        assertEquals(3, prepared.get(0).clears, "Parameters should be cleared each time it's returned");
+
+        ConnectionPool.Stats stats = pool.stats();
+        assertEquals(2, stats.statementHits(), "Later prepares should hit the cache");
+        assertEquals(1, stats.statementMisses(), "First prepare should miss");
+    }
+
+    @Test
+    @DisplayName("Test Closed Statement Lease Can't Be Used")
+    public void testClosedStatementLeaseCantBeUsed() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        try (Connection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+            stmt.close();
+            assertTrue(stmt.isClosed(), "Lease should report closed");
+            assertThrows(SQLException.class, stmt::executeQuery);
+        }
+    }
+
+    @Test
+    @DisplayName("Test Closing Connection Returns Unclosed Statement")
+    public void testUnclosedStatementReturnedWithConnection() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        Connection conn = pool.borrow();
+        PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+        conn.close();
+
+        assertTrue(stmt.isClosed(), "Statement should close with its connection");
+        SQLException ex = assertThrows(SQLException.class, stmt::executeUpdate);
+        assertEquals("Statement is closed.", ex.getMessage());
+        assertFalse(physical.get(0).statements.get(0).closed, "Cached statement should stay open");
+
+        try (Connection again = pool.borrow();
+             PreparedStatement reused = again.prepareStatement("SELECT 1")) {
+            assertEquals(1, reused.executeUpdate());
+        }
+        assertEquals(1, physical.get(0).statements.size(), "Statement left open should still be reused");
+        assertEquals(1, pool.stats().statementHits(), "Second prepare should hit the cache");
+    }
+
+    @Test
+    @DisplayName("Test Stale Statement Can't Touch Next Borrower's Statement")
+    public void testStaleStatementAfterConnectionReused() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        Connection first = pool.borrow();
+        PreparedStatement stale = first.prepareStatement("SELECT 1");
+        first.close();
+
+        try (Connection second = pool.borrow();
+             PreparedStatement current = second.prepareStatement("SELECT 1")) {
+            assertThrows(SQLException.class, stale::executeUpdate);
+            stale.close(); // Must not give back the statement the second borrower now has
+            try (PreparedStatement inner = second.prepareStatement("SELECT 1")) {
+                assertNotSame(current, inner, "Statement in use shouldn't be handed out again");
+            }
+            assertFalse(current.isClosed(), "Current borrower's statement should stay usable");
+            assertEquals(1, current.executeUpdate());
+        }
+        assertEquals(2, physical.get(0).statements.size(), "Only the nested prepare should be real");
+        assertEquals(1, pool.stats().statementHits(), "Second borrower should get the cached statement");
+    }
+
+    @Test
+    @DisplayName("Test Least Recently Used Statement Is Evicted")
+    public void testLeastRecentlyUsedStatementIsEvicted() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000, 2);
+        try (Connection conn = pool.borrow()) {
+            conn.prepareStatement("SELECT 1").close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement("SELECT 1").close(); // Now SELECT 2 is the oldest
+            conn.prepareStatement("SELECT 3").close();
+            conn.prepareStatement("SELECT 1").close();
+        }
+        List<FakeStatement> prepared = physical.get(0).statements;
+        assertEquals(3, prepared.size(), "Each SQL should be prepared once");
+        assertFalse(prepared.get(0).closed, "Recently used statement should stay");
+        assertTrue(prepared.get(1).closed, "Least recently used statement should be closed");
+        assertFalse(prepared.get(2).closed, "Newest statement should stay");
+    }
+
+    @Test
+    @DisplayName("Test Same SQL Open Twice Is Not Shared")
+    public void testSameSqlOpenTwice() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        try (Connection conn = pool.borrow();
+             PreparedStatement outer = conn.prepareStatement("SELECT 1")) {
+            try (PreparedStatement inner = conn.prepareStatement("SELECT 1")) {
+                assertNotSame(outer, inner, "Statement in use shouldn't be handed out again");
+            }
+            List<FakeStatement> prepared = physical.get(0).statements;
+            assertEquals(2, prepared.size(), "Second one should be prepared separately");
+            assertTrue(prepared.get(1).closed, "Uncached statement should really close");
+            assertFalse(prepared.get(0).closed, "Cached statement should stay open");
+        }
+    }
+
+    @Test
+    @DisplayName("Test Statement That Fails To Reset Is Dropped")
+    public void testStatementThatFailsToResetIsDropped() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        try (Connection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+            physical.get(0).statements.get(0).failClear = true;
+            stmt.close();
+
+            try (PreparedStatement again = conn.prepareStatement("SELECT 1")) {
+                assertFalse(again.isClosed(), "Broken statement shouldn't be handed out again");
+                assertEquals(1, again.executeUpdate());
+            }
+        }
+        List<FakeStatement> prepared = physical.get(0).statements;
+        assertEquals(2, prepared.size(), "A new statement should be prepared");
+        assertTrue(prepared.get(0).closed, "Broken statement should be closed");
+        assertFalse(prepared.get(1).closed, "New statement should be cached");
+        assertEquals(0, pool.stats().statementHits(), "Broken statement shouldn't count as a hit");
+    }
+
+    @Test
+    @DisplayName("Test Statement Cache Can Be Turned Off")
+    public void testStatementCacheOff() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000, 0);
+        try (Connection conn = pool.borrow()) {
+            conn.prepareStatement("SELECT 1").close();
+            conn.prepareStatement("SELECT 1").close();
+        }
+        List<FakeStatement> prepared = physical.get(0).statements;
+        assertEquals(2, prepared.size(), "Every prepare should be real");
+        assertTrue(prepared.get(0).closed && prepared.get(1).closed, "Statements should really close");
+        assertEquals(0, pool.stats().statementHits(), "Nothing should hit");
+    }
+
+    @Test
+    @DisplayName("Test Uncached Statements Report The Pooled Connection")
+    public void testUncachedStatementsAreWrapped() throws Exception {
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000);
+        try (Connection conn = pool.borrow();
+             PreparedStatement cached = conn.prepareStatement("SELECT 1");
+             PreparedStatement oneOff = conn.prepareStatement("SELECT 1")) {
+            assertSame(conn, cached.getConnection(), "Cached statement should report the pooled connection");
+            assertSame(conn, oneOff.getConnection(), "Uncached statement should report the pooled connection");
+            oneOff.close();
+            assertThrows(SQLException.class, oneOff::executeUpdate);
+        }
+        assertFalse(physical.get(0).closed, "Physical connection should stay in the pool");
+        pool.close();
+
+        newPool(0, 1, 1000, 60_000, 60_000, 60_000, 0);
+        Connection conn = pool.borrow();
+        PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+        assertSame(conn, stmt.getConnection(), "Statement should report the pooled connection with the cache off");
+        stmt.getConnection().close();
+        assertTrue(stmt.isClosed(), "Statement should close with its connection");
+        assertFalse(physical.get(1).closed, "Physical connection should go back to the pool, not be closed");
+        assertTrue(physical.get(1).statements.get(0).closed, "Uncached statement should really close");
+        assertEquals(1, pool.stats().idle(), "Connection should be back in the pool");
+    }
+
+    @Test
+    @DisplayName("Test Invalid Settings")
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool.Settings(3, 2, 0, 0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool.Settings(0, 0, 0, 0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool.Settings(0, 1, 0, 0, 0, 0, -1));
+    }
+}
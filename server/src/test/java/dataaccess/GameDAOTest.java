@@ -3,9 +3,19 @@ package dataaccess;
 import static org.junit.jupiter.api.Assertions.*;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import chess.GameCodec;
+import com.google.gson.Gson;
 import model.GameData;
+import model.GameInfo;
 import org.junit.jupiter.api.*;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
 import java.util.Map;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -50,6 +60,27 @@ public class GameDAOTest {
         assertTrue(games.containsKey(gameID2), "List should contain gameID2");
     }
 
+    @Test
+    @DisplayName("Test List Game Info")
+    public void testListGameInfo() throws Exception {
+        int gameID1 = gameDAO.createGame("Game One");
+        int gameID2 = gameDAO.createGame("Game Two");
+        GameData game = gameDAO.getGame(gameID2);
+        gameDAO.updateGame(new GameData(gameID2, "PlayerWhite", "PlayerBlack", game.getGameName(), game.getGame()));
+
+        // Unreadable game state shows the listing never looks at it
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE game SET gameState = ?")) {
+            stmt.setBytes(1, new byte[]{GameCodec.VERSION});
+            stmt.executeUpdate();
+        }
+
+        List<GameInfo> games = gameDAO.listGameInfo();
+        assertEquals(List.of(new GameInfo(gameID1, null, null, "Game One"),
+                new GameInfo(gameID2, "PlayerWhite", "PlayerBlack", "Game Two")), games,
+                "Listing should have every game's ID, players and name in ID order");
+    }
+
     @Test
     @DisplayName("Test Update Game")
     public void testUpdateGame() throws Exception {
@@ -104,5 +135,170 @@ public class GameDAOTest {
         assertTrue(ex.getMessage().contains("No game updated"), "Expected error message for updating non-existent game");
     }
 
+    @Test
+    @DisplayName("Test Game State Stored In Binary Format")
+    public void testGameStateStoredAsBinary() throws Exception {
+        int gameID = gameDAO.createGame("Binary Game");
+        GameData game = gameDAO.getGame(gameID);
+        game.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        gameDAO.updateGame(game);
+
+        byte[] stored = readGameState(gameID);
+        assertTrue(GameCodec.isEncoded(stored), "Game state should be in the binary format");
+        assertTrue(stored.length < 64, "Binary game state should be small");
+        assertEquals(game.getGame().getZobristKey(), gameDAO.getGame(gameID).getGame().getZobristKey(),
+                "Position should survive the round trip");
+    }
+
+    @Test
+    @DisplayName("Test Migrate JSON Game State")
+    public void testMigrateJsonGameState() throws Exception {
+        int gameID = gameDAO.createGame("Old JSON Game");
+        ChessGame oldGame = new ChessGame();
+        oldGame.makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE game SET gameState = ? WHERE gameID = ?")) {
+            stmt.setString(1, new Gson().toJson(oldGame));
+            stmt.setInt(2, gameID);
+            stmt.executeUpdate();
+        }
+
+        // JSON rows can still be read before they are converted
+        assertEquals(oldGame.getBoard(), gameDAO.getGame(gameID).getGame().getBoard(), "JSON game should load");
+
+        assertEquals(1, gameDAO.migrateJsonGames(), "One game should be converted");
+        assertTrue(GameCodec.isEncoded(readGameState(gameID)), "Converted game should be binary");
+        assertEquals(oldGame.getBoard(), gameDAO.getGame(gameID).getGame().getBoard(), "Converted game should load");
+        assertEquals(0, gameDAO.migrateJsonGames(), "Nothing left to convert");
+    }
+
+    @Test
+    @DisplayName("Test Moves Are Logged And Replayed")
+    public void testMovesAreLoggedAndReplayed() throws Exception {
+        int gameID = gameDAO.createGame("Move Log Game");
+        ChessGame game = gameDAO.getGame(gameID).getGame();
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        game.makeMove(move);
+        gameDAO.addMove(gameID, game, move);
+
+        byte[] snapshot = readGameState(gameID);
+        assertEquals(GameCodec.encode(new ChessGame()).length, snapshot.length, "One move shouldn't rewrite the snapshot");
+        ChessGame loaded = gameDAO.getGame(gameID).getGame();
+        assertEquals(game.getZobristKey(), loaded.getZobristKey(), "Logged move should be replayed");
+        assertEquals(ChessGame.TeamColor.BLACK, loaded.getTeamTurn(), "Replayed move should change the turn");
+        assertEquals(game.getZobristKey(), gameDAO.listGames().get(gameID).getGame().getZobristKey(),
+                "Listed games should replay their moves too");
 
+        // A second move at the same ply, e.g. from a stale copy of the game, is refused
+        Exception ex = assertThrows(DataAccessException.class, () -> gameDAO.addMove(gameID, game, move));
+        assertTrue(ex.getMessage().contains("Error adding move"), "Expected error message for a duplicate ply");
+    }
+
+    @Test
+    @DisplayName("Test Snapshot Every Interval")
+    public void testSnapshotEveryInterval() throws Exception {
+        int gameID = gameDAO.createGame("Snapshot Game");
+        ChessGame game = gameDAO.getGame(gameID).getGame();
+        // Knights out and back. It's a draw by repetition soon, but the DAO doesn't care
+        ChessMove[] moves = {
+                new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null),
+                new ChessMove(new ChessPosition(3, 3), new ChessPosition(1, 2), null),
+                new ChessMove(new ChessPosition(6, 3), new ChessPosition(8, 2), null),
+        };
+        for (int ply = 0; ply < GameDAO.SNAPSHOT_INTERVAL + 1; ply++) {
+            ChessMove move = moves[ply % moves.length];
+            game.makeMove(move);
+            gameDAO.addMove(gameID, game, move);
+        }
+
+        assertEquals(GameDAO.SNAPSHOT_INTERVAL, GameCodec.decode(readGameState(gameID)).getPly(),
+                "Snapshot should be taken after SNAPSHOT_INTERVAL moves");
+        GameData loaded = gameDAO.getGame(gameID);
+        assertEquals(GameDAO.SNAPSHOT_INTERVAL + 1, loaded.getGame().getPly(), "Moves after the snapshot should be replayed");
+        assertEquals(game.getBoard(), loaded.getGame().getBoard(), "Board should match after replay");
+    }
+
+    @Test
+    @DisplayName("Test List Games While A Snapshot Is Written")
+    public void testListGamesDuringSnapshot() throws Exception {
+        int gameID = gameDAO.createGame("Listed Snapshot Game");
+        ChessGame game = gameDAO.getGame(gameID).getGame();
+        ChessMove[] moves = {
+                new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null),
+                new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null),
+                new ChessMove(new ChessPosition(3, 3), new ChessPosition(1, 2), null),
+                new ChessMove(new ChessPosition(6, 3), new ChessPosition(8, 2), null),
+        };
+        for (int ply = 0; ply < GameDAO.SNAPSHOT_INTERVAL - 1; ply++) {
+            ChessMove move = moves[ply % moves.length];
+            game.makeMove(move);
+            gameDAO.addMove(gameID, game, move);
+        }
+        ChessGame listedGame = GameCodec.decode(GameCodec.encode(game));
+
+        // Another player moves after the game rows are read: the snapshot at SNAPSHOT_INTERVAL, then one more
+        gameDAO.betweenListReads = () -> {
+            try {
+                GameDAO other = new GameDAO();
+                for (int ply = GameDAO.SNAPSHOT_INTERVAL - 1; ply <= GameDAO.SNAPSHOT_INTERVAL; ply++) {
+                    ChessMove move = moves[ply % moves.length];
+                    game.makeMove(move);
+                    other.addMove(gameID, game, move);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+        GameData listed = gameDAO.listGames().get(gameID);
+        assertEquals(GameDAO.SNAPSHOT_INTERVAL - 1, listed.getGame().getPly(),
+                "Listing should see the game as it was when it started");
+        assertEquals(listedGame.getBoard(), listed.getGame().getBoard(), "Board should match the first read");
+        assertEquals(GameDAO.SNAPSHOT_INTERVAL + 1, gameDAO.getGame(gameID).getGame().getPly(),
+                "Later reads should see the new moves");
+    }
+
+    @Test
+    @DisplayName("Test Migrate Baseline JSON Game State")
+    public void testMigrateBaselineJsonGameState() throws Exception {
+        // Stored by the first version of the server: castling and en passant live in per-piece flags.
+        // White's king has moved (and come back), and d2-d4 can be taken en passant by the e4 pawn
+        String baselineJson = "{\"teamTurn\":\"BLACK\",\"gameBoard\":{\"board\":["
+                + "[null,null,null,null,{\"type\":\"KING\",\"color\":\"WHITE\",\"passantable\":false,\"noMoves\":false},null,null,{\"type\":\"ROOK\",\"color\":\"WHITE\",\"passantable\":false,\"noMoves\":true}],"
+                + "[null,null,null,null,null,null,null,null],"
+                + "[null,null,null,null,null,null,null,null],"
+                + "[null,null,null,{\"type\":\"PAWN\",\"color\":\"WHITE\",\"passantable\":true,\"noMoves\":false},{\"type\":\"PAWN\",\"color\":\"BLACK\",\"passantable\":false,\"noMoves\":false},null,null,null],"
+                + "[null,null,null,null,null,null,null,null],"
+                + "[null,null,null,null,null,null,null,null],"
+                + "[null,null,null,null,null,null,null,null],"
+                + "[null,null,null,null,{\"type\":\"KING\",\"color\":\"BLACK\",\"passantable\":false,\"noMoves\":true},null,null,null]"
+                + "]},\"gameOver\":false}";
+        int gameID = gameDAO.createGame("Baseline JSON Game");
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE game SET gameState = ? WHERE gameID = ?")) {
+            stmt.setString(1, baselineJson);
+            stmt.setInt(2, gameID);
+            stmt.executeUpdate();
+        }
+
+        assertEquals(1, gameDAO.migrateJsonGames(), "One game should be converted");
+        ChessGame game = gameDAO.getGame(gameID).getGame();
+        assertEquals("4k3/8/8/8/3Pp3/8/8/4K2R b - d3 0 1", Fen.toFen(game),
+                "Moved king should have no castling rights, and en passant should be kept");
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(3, 4), null));
+        assertFalse(game.validMoves(new ChessPosition(1, 5))
+                        .contains(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 7), null)),
+                "King that moved must not castle");
+    }
+
+    private static byte[] readGameState(int gameID) throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT gameState FROM game WHERE gameID = ?")) {
+            stmt.setInt(1, gameID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next(), "Game row should exist");
+                return rs.getBytes("gameState");
+            }
+        }
+    }
 }
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.*;
 import dataaccess.GameDAO;
 import dataaccess.AuthDAO;
 import model.GameData;
+import model.GameInfo;
 import chess.ChessGame;
 
 import java.util.List;
@@ -79,6 +80,26 @@ public class GameServiceTest {
         assertEquals("Invalid auth token.", ex.getMessage());
     }
 
+    @Test
+    @DisplayName("List Game Info - Positive")
+    public void testListGameInfoPositive() throws Exception {
+        int gameID = gameService.createGame(validAuthToken, "Game One");
+        gameService.joinGame(validAuthToken, gameID, true);
+
+        List<GameInfo> games = gameService.listGameInfo(validAuthToken);
+        assertEquals(List.of(new GameInfo(gameID, validUser, null, "Game One")), games,
+                "Listing should have the game's ID, players and name");
+    }
+
+    @Test
+    @DisplayName("List Game Info - Negative (Invalid Auth)")
+    public void testListGameInfoInvalidAuth() throws Exception {
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> {
+            gameService.listGameInfo(invalidAuthToken);
+        });
+        assertEquals("Invalid auth token.", ex.getMessage());
+    }
+
     @Test
     @DisplayName("Join Game - Positive (White)")
     public void testJoinGamePositiveWhite() throws Exception {
@@ -4,6 +4,7 @@ import service.GameService;
 import java.util.Collections;
 import java.util.List;
 import model.GameData;
+import model.GameInfo;
 import chess.ChessGame;
 
 public class FakeGameService extends GameService {
@@ -30,6 +31,14 @@ public class FakeGameService extends GameService {
         return Collections.singletonList(dummyGame);
     }
 
+    @Override
+    public List<GameInfo> listGameInfo(String authToken) {
+        if(!"dummyAuthToken".equals(authToken)) {
+            throw new IllegalArgumentException("Invalid auth token.");
+        }
+        return Collections.singletonList(new GameInfo(123, "dummyWhite", null, "Test Game"));
+    }
+
     @Override
     public void joinGame(String authToken, int gameID, boolean joinAsWhite) {
         if(!"dummyAuthToken".equals(authToken)) {
@@ -0,0 +1,119 @@
+package chess;
+
+/**
+ * Precomputed attack tables and square helpers for the bitboard board core.
+ * <p>
+ * Squares are numbered 0-63 starting at a1 (row 1, column 1) and moving across
+ * each row, so square = (row - 1) * 8 + (column - 1). Bit n of a bitboard is set
+ * when square n is part of the set.
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] BETWEEN = new long[64][64];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {1, -2}, {2, -1}, {-1, 2}, {-2, 1}, {-1, -2}, {-2, -1}};
+        int[][] kingSteps = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        for (int sq = 0; sq < 64; sq++) {
+            int row = row(sq);
+            int col = column(sq);
+            KNIGHT_ATTACKS[sq] = stepAttacks(row, col, knightSteps);
+            KING_ATTACKS[sq] = stepAttacks(row, col, kingSteps);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][sq] = stepAttacks(row, col, new int[][]{{1, 1}, {1, -1}});
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][sq] = stepAttacks(row, col, new int[][]{{-1, 1}, {-1, -1}});
+
+            // Walk out along each line, remembering the squares passed on the way
+            for (int[] dir : kingSteps) {
+                long passed = 0L;
+                for (int r = row + dir[0], c = col + dir[1]; onBoard(r, c); r += dir[0], c += dir[1]) {
+                    BETWEEN[sq][square(r, c)] = passed;
+                    passed |= bit(square(r, c));
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    private static long stepAttacks(int row, int col, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            if (onBoard(row + step[0], col + step[1])) {
+                attacks |= bit(square(row + step[0], col + step[1]));
+            }
+        }
+        return attacks;
+    }
+
+    public static boolean onBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return the squares a pawn of the given color standing on square attacks
+     * (its diagonal capture squares, whether or not anything is there)
+     */
+    public static long pawnAttacks(ChessGame.TeamColor color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    /**
+     * @return the squares strictly between a and b if they share a row, column or diagonal,
+     * otherwise an empty set
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    // Sliders are two array loads each, see MagicBitboards
+    public static long rookAttacks(int square, long occupied) {
+        return MagicBitboards.rookAttacks(square, occupied);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return MagicBitboards.bishopAttacks(square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return MagicBitboards.rookAttacks(square, occupied) | MagicBitboards.bishopAttacks(square, occupied);
+    }
+}
@@ -1,9 +1,8 @@
 package chess;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Objects;
+import java.util.List;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -15,6 +14,11 @@ public class ChessBoard {
 
     private ChessPiece[][] board;
 
+    // Bitboard core: one set per piece (see pieceIndex), then one per color. Kept in sync with board.
+    // Not serialized, so it is rebuilt from the board array on first use after Gson fills one in
+    private transient long[] bitboards;
+    private transient long zobristKey; // Zobrist key of the pieces alone, updated with the bitboards
+
     public ChessBoard() {
         board = new ChessPiece[8][8];
     }
@@ -26,23 +30,68 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow() - 1][position.getColumn() - 1] = piece; // Add the piece on the board
+        int square = Bitboards.square(position);
+        clear(square); // Clear out whatever was there so the bitboards stay in sync
+        if (piece != null) {
+            put(square, ChessPiece.of(piece.getTeamColor(), piece.getPieceType())); // Add the shared piece on the board
+        }
     }
 
     // Helper function to remove a piece, primarily for moving
     public void removePiece(ChessPosition position) {
-        board[position.getRow() - 1][position.getColumn() - 1] = null;
+        clear(Bitboards.square(position));
     }
 
-    // Helper function to allow for searching the board
-    public Collection<ChessPosition> getAllPositions() {
-        Collection<ChessPosition> positions = new ArrayList<>();
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                positions.add(new ChessPosition(row + 1, col + 1));
+    // Places a piece on an empty square (see Bitboards for square numbers)
+    void put(int square, ChessPiece piece) {
+        long[] bits = bitboards(); // Before touching the array, in case this builds them from it
+        board[square >>> 3][square & 7] = piece;
+        long squareBit = Bitboards.bit(square);
+        bits[pieceIndex(piece)] |= squareBit;
+        bits[COLOR_OFFSET + piece.getTeamColor().ordinal()] |= squareBit;
+        zobristKey ^= Zobrist.piece(pieceIndex(piece), square);
+    }
+
+    // Empties a square, returning whatever was on it
+    ChessPiece clear(int square) {
+        long[] bits = bitboards();
+        ChessPiece piece = board[square >>> 3][square & 7];
+        if (piece != null) {
+            board[square >>> 3][square & 7] = null;
+            long squareBit = Bitboards.bit(square);
+            bits[pieceIndex(piece)] &= ~squareBit;
+            bits[COLOR_OFFSET + piece.getTeamColor().ordinal()] &= ~squareBit;
+            zobristKey ^= Zobrist.piece(pieceIndex(piece), square);
+        }
+        return piece;
+    }
+
+    // Independent board with the same pieces, sharing the piece objects (moves never change a piece)
+    ChessBoard copy() {
+        ChessBoard copy = new ChessBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = getPiece(sq);
+            if (piece != null) {
+                copy.put(sq, piece);
             }
         }
-        return positions;
+        return copy;
+    }
+
+    // Every square, built once from the shared positions
+    private static final List<ChessPosition> ALL_POSITIONS;
+
+    static {
+        ChessPosition[] positions = new ChessPosition[64];
+        for (int sq = 0; sq < 64; sq++) {
+            positions[sq] = ChessPosition.of(sq);
+        }
+        ALL_POSITIONS = List.of(positions);
+    }
+
+    // Helper function to allow for searching the board. The list can't be changed
+    public Collection<ChessPosition> getAllPositions() {
+        return ALL_POSITIONS;
     }
 
     /**
@@ -56,6 +105,160 @@ public class ChessBoard {
         return board[position.getRow() - 1][position.getColumn() - 1];
     }
 
+    // Same as getPiece, but by square number (see Bitboards)
+    ChessPiece getPiece(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
+    ////////////////////// BITBOARDS ////////////////////////
+
+    private static final int COLOR_OFFSET = 12;
+
+    // Index of a piece's set in the bitboard array: 6 types per color
+    static int pieceIndex(ChessPiece piece) {
+        return piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal();
+    }
+
+    private long[] bitboards() {
+        if (bitboards == null) {
+            long[] bits = new long[COLOR_OFFSET + 2];
+            for (int sq = 0; sq < 64; sq++) {
+                ChessPiece piece = getPiece(sq);
+                if (piece != null) {
+                    bits[pieceIndex(piece)] |= Bitboards.bit(sq);
+                    bits[COLOR_OFFSET + piece.getTeamColor().ordinal()] |= Bitboards.bit(sq);
+                }
+            }
+            bitboards = bits;
+            zobristKey = computeZobristKey();
+        }
+        return bitboards;
+    }
+
+    /**
+     * @return the Zobrist key for the pieces on the board, kept up to date as pieces are added
+     * and removed (ChessGame adds in turn, castling and en passant)
+     */
+    public long zobristKey() {
+        bitboards(); // Make sure it has been built
+        return zobristKey;
+    }
+
+    // Key from scratch, used after deserializing and to double check the incremental one
+    long computeZobristKey() {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = getPiece(sq);
+            if (piece != null) {
+                key ^= Zobrist.piece(pieceIndex(piece), sq);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return the set of squares holding the given team's pieces of the given type
+     */
+    public long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return bitboards()[color.ordinal() * 6 + type.ordinal()];
+    }
+
+    /**
+     * @return the set of squares holding any of the given team's pieces
+     */
+    public long pieces(ChessGame.TeamColor color) {
+        return bitboards()[COLOR_OFFSET + color.ordinal()];
+    }
+
+    /**
+     * Counts every kind of piece on the board, 4 bits per kind in pieceIndex order, so two
+     * boards with the same material get the same signature whatever squares it stands on
+     *
+     * @return the material signature; compare against sums of materialUnit
+     */
+    public long materialSignature() {
+        long[] bits = bitboards();
+        long signature = 0L;
+        for (int i = 0; i < COLOR_OFFSET; i++) {
+            signature |= (long) Math.min(Long.bitCount(bits[i]), 15) << (4 * i);
+        }
+        return signature;
+    }
+
+    /**
+     * @return what one piece of this color and type adds to a material signature
+     */
+    public static long materialUnit(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return 1L << (4 * (color.ordinal() * 6 + type.ordinal()));
+    }
+
+    /**
+     * @return the set of squares holding any piece
+     */
+    public long occupied() {
+        long[] bits = bitboards();
+        return bits[COLOR_OFFSET] | bits[COLOR_OFFSET + 1];
+    }
+
+    /**
+     * Works backward from a square to find which of a team's pieces attack it: a knight
+     * attacks the square if a knight placed on the square would attack the knight, and
+     * likewise for every other piece (pawns looking the opposite direction)
+     *
+     * @param square   the target square
+     * @param color    the attacking team
+     * @param occupied the occupancy sliders are blocked by
+     * @return the set of squares holding attackers
+     */
+    public long attackersOf(int square, ChessGame.TeamColor color, long occupied) {
+        long[] bits = bitboards();
+        int base = color.ordinal() * 6;
+        long queens = bits[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        ChessGame.TeamColor defender = color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK
+                : ChessGame.TeamColor.WHITE;
+        return (Bitboards.pawnAttacks(defender, square) & bits[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Bitboards.knightAttacks(square) & bits[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Bitboards.kingAttacks(square) & bits[base + ChessPiece.PieceType.KING.ordinal()])
+                | (Bitboards.bishopAttacks(square, occupied) & (bits[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens))
+                | (Bitboards.rookAttacks(square, occupied) & (bits[base + ChessPiece.PieceType.ROOK.ordinal()] | queens));
+    }
+
+    /**
+     * Determines if any of a team's pieces attack a square. Cheaper than attackersOf,
+     * since it stops at the first attacker found
+     *
+     * @param square the target square
+     * @param color  the attacking team
+     * @return True if the square is attacked
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor color) {
+        long[] bits = bitboards();
+        int base = color.ordinal() * 6;
+        ChessGame.TeamColor defender = color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK
+                : ChessGame.TeamColor.WHITE;
+        if ((Bitboards.pawnAttacks(defender, square) & bits[base + ChessPiece.PieceType.PAWN.ordinal()]) != 0
+                || (Bitboards.knightAttacks(square) & bits[base + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0
+                || (Bitboards.kingAttacks(square) & bits[base + ChessPiece.PieceType.KING.ordinal()]) != 0) {
+            return true;
+        }
+        long occupied = bits[COLOR_OFFSET] | bits[COLOR_OFFSET + 1];
+        long queens = bits[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        return (Bitboards.bishopAttacks(square, occupied) & (bits[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens)) != 0
+                || (Bitboards.rookAttacks(square, occupied) & (bits[base + ChessPiece.PieceType.ROOK.ordinal()] | queens)) != 0;
+    }
+
+    // Squares a single piece attacks from the given square
+    static long attacksFrom(ChessPiece.PieceType type, ChessGame.TeamColor color, int square, long occupied) {
+        return switch (type) {
+            case KING -> Bitboards.kingAttacks(square);
+            case QUEEN -> Bitboards.queenAttacks(square, occupied);
+            case BISHOP -> Bitboards.bishopAttacks(square, occupied);
+            case KNIGHT -> Bitboards.knightAttacks(square);
+            case ROOK -> Bitboards.rookAttacks(square, occupied);
+            case PAWN -> Bitboards.pawnAttacks(color, square);
+        };
+    }
+
 
 
     /**
@@ -64,32 +267,36 @@ public class ChessBoard {
      */
     public void resetBoard() {
         board = new ChessPiece[8][8]; //Clears anything on board
+        bitboards = new long[COLOR_OFFSET + 2];
+        zobristKey = 0L;
 
         for (ChessGame.TeamColor teamColor : ChessGame.TeamColor.values()) {
-            System.out.println("Adding pieces for " + teamColor);
+            if (Trace.ENABLED) {
+                Trace.log("Adding pieces for " + teamColor);
+            }
 
             int pawnRow = (teamColor == ChessGame.TeamColor.WHITE) ? 2 : 7;
             int pieceRow = (teamColor == ChessGame.TeamColor.WHITE) ? 1 : 8;
             // Pawns
             for (int col = 0; col < 8; col++) {
-                addPiece(new ChessPosition(pawnRow, col + 1), new ChessPiece(teamColor, ChessPiece.PieceType.PAWN));
+                addPiece(ChessPosition.of(pawnRow, col + 1), ChessPiece.of(teamColor, ChessPiece.PieceType.PAWN));
             }
 
             // Rooks
-            addPiece(new ChessPosition(pieceRow, 1), new ChessPiece(teamColor, ChessPiece.PieceType.ROOK));
-            addPiece(new ChessPosition(pieceRow, 8), new ChessPiece(teamColor, ChessPiece.PieceType.ROOK));
+            addPiece(ChessPosition.of(pieceRow, 1), ChessPiece.of(teamColor, ChessPiece.PieceType.ROOK));
+            addPiece(ChessPosition.of(pieceRow, 8), ChessPiece.of(teamColor, ChessPiece.PieceType.ROOK));
 
             // Knights
-            addPiece(new ChessPosition(pieceRow, 2), new ChessPiece(teamColor, ChessPiece.PieceType.KNIGHT));
-            addPiece(new ChessPosition(pieceRow, 7), new ChessPiece(teamColor, ChessPiece.PieceType.KNIGHT));
+            addPiece(ChessPosition.of(pieceRow, 2), ChessPiece.of(teamColor, ChessPiece.PieceType.KNIGHT));
+            addPiece(ChessPosition.of(pieceRow, 7), ChessPiece.of(teamColor, ChessPiece.PieceType.KNIGHT));
 
             // Bishops
-            addPiece(new ChessPosition(pieceRow, 3), new ChessPiece(teamColor, ChessPiece.PieceType.BISHOP));
-            addPiece(new ChessPosition(pieceRow, 6), new ChessPiece(teamColor, ChessPiece.PieceType.BISHOP));
+            addPiece(ChessPosition.of(pieceRow, 3), ChessPiece.of(teamColor, ChessPiece.PieceType.BISHOP));
+            addPiece(ChessPosition.of(pieceRow, 6), ChessPiece.of(teamColor, ChessPiece.PieceType.BISHOP));
 
             // Royalty
-            addPiece(new ChessPosition(pieceRow, 4), new ChessPiece(teamColor, ChessPiece.PieceType.QUEEN));
-            addPiece(new ChessPosition(pieceRow, 5), new ChessPiece(teamColor, ChessPiece.PieceType.KING));
+            addPiece(ChessPosition.of(pieceRow, 4), ChessPiece.of(teamColor, ChessPiece.PieceType.QUEEN));
+            addPiece(ChessPosition.of(pieceRow, 5), ChessPiece.of(teamColor, ChessPiece.PieceType.KING));
         }
     }
 
@@ -108,11 +315,12 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
+        // Same piece sets means the same pieces on the same squares
+        return Arrays.equals(bitboards(), that.bitboards());
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(zobristKey());
     }
 }
@@ -1,7 +1,16 @@
 package chess;
 
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.stream.Collectors;
 
 
 /**
@@ -10,12 +19,43 @@ import java.util.stream.Collectors;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessGame.GsonAdapter.class)
 public class ChessGame {
 
+    // Castling rights bits
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+
+    static final int NO_SQUARE = -1;
+
     TeamColor teamTurn;
     ChessBoard gameBoard;
     private boolean gameOver = false;
 
+    // Game state that isn't visible from the board alone, packed into one word (see STATE_* below):
+    // castling rights, the file a pawn just double pushed on (for en passant), the halfmove clock
+    // (moves since the last capture or pawn move) and the fullmove number
+    private int state = INITIAL_STATE;
+
+    // Zobrist keys of the positions since the last capture or pawn move, as of loading or the last time the
+    // game was written out (GsonAdapter fills it in then). Only here so a saved game keeps counting
+    // repetitions once it's loaded again; see keyHistory for the live ones
+    private long[] repetitionKeys = new long[0];
+
+    // Undo stack for doMove/undoMove. Each entry is a packed record (see UNDO_* below) plus the pieces
+    // that moved and were captured, so a move can be taken back without copying the board
+    private transient long[] undoRecords = new long[64];
+    private transient ChessPiece[] undoMoved = new ChessPiece[64];
+    private transient ChessPiece[] undoCaptured = new ChessPiece[64];
+    private transient int undoCount;
+
+    // Key of the position before each move, for spotting repetitions. Built from repetitionKeys on first
+    // use, the same way the board builds its bitboards after deserializing
+    private transient long[] keyHistory;
+    private transient int keyCount;
+
     public ChessGame() {
         gameBoard = new ChessBoard();
         gameBoard.resetBoard(); // Setup for new game
@@ -24,6 +64,49 @@ public class ChessGame {
         teamTurn = TeamColor.WHITE;
     }
 
+    private ChessGame(ChessBoard board, TeamColor turn) {
+        gameBoard = board;
+        teamTurn = turn;
+    }
+
+    // Independent copy of the position and game state, without the undo history, so another
+    // thread can search from here
+    ChessGame copy() {
+        ChessGame copy = new ChessGame(gameBoard.copy(), teamTurn);
+        copy.gameOver = gameOver;
+        copy.state = state;
+        copy.repetitionKeys = repetitionWindow();
+        return copy;
+    }
+
+    // Rebuilds a game from the parts GameCodec stores or Fen reads, without going through a constructor
+    // that sets up a new game first
+    static ChessGame restore(ChessBoard board, TeamColor turn, int state, boolean gameOver, long[] repetitionKeys) {
+        ChessGame game = new ChessGame(board, turn);
+        game.state = state & (castlingRightsFor(board) | ~STATE_CASTLING_MASK); // Never castle with a missing rook
+        game.gameOver = gameOver;
+        game.repetitionKeys = repetitionKeys;
+        return game;
+    }
+
+    // The game-state word (see STATE_* below), for GameCodec
+    int stateWord() {
+        return state;
+    }
+
+    // Keys of the positions since the last capture or pawn move, oldest first, for GameCodec
+    long[] repetitionKeys() {
+        return repetitionWindow();
+    }
+
+    /**
+     * @return how many moves (by either team) have been played since the start of the game, worked
+     * out from the fullmove number and whose turn it is
+     */
+    public int getPly() {
+        return 2 * (fullmoveNumber() - 1) + (teamTurn == TeamColor.BLACK ? 1 : 0);
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -38,6 +121,8 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         teamTurn = team;
+        clearStatus();
+        state &= ~STATE_EP_MASK; // The en passant square depends on whose turn it is, so it no longer applies
     }
 
     /**
@@ -60,116 +145,54 @@ public class ChessGame {
         if (selectedPiece == null) {
             return null;
         }
-        Collection<ChessMove> possibleMoves = selectedPiece.pieceMoves(gameBoard, startPosition);
-
-        // Adding en passant here, so we can check the gameboard and get the surrounding piece information
-        if (selectedPiece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            // IF STATMENT HERE TO CHECK FOR RIGHT EDGE (also down for left edge)
-            if (startPosition.getColumn() < 8) {
-                ChessPiece lookRight = gameBoard.getPiece(new ChessPosition(startPosition.getRow(), startPosition.getColumn() + 1));
-                System.out.println("Made it here, don't know more yet");
-                if (lookRight != null && lookRight.getPassantable()
-                        && lookRight.getTeamColor() != selectedPiece.getTeamColor()
-                        && startPosition.getColumn() < 8) {
-                    System.out.println("enpassant possible - Right: " + lookRight.getPieceType());
-                    possibleMoves.add(new ChessMove(startPosition, new ChessPosition(
-                            startPosition.getRow() + (selectedPiece.getTeamColor() == TeamColor.WHITE ? 1 : -1), // Move diagonally forward
-                            startPosition.getColumn() + 1),
-                            null));
-                }
-            }
-            if (startPosition.getColumn() > 1) {
-                ChessPiece lookLeft = gameBoard.getPiece(new ChessPosition(startPosition.getRow(), startPosition.getColumn() - 1));
-                if (lookLeft != null
-                        && lookLeft.getPassantable() && lookLeft.getTeamColor() != selectedPiece.getTeamColor()
-                        && startPosition.getColumn() > 1) {
-                    System.out.println("enpassant possible - Left: " + lookLeft.getPieceType());
-                    possibleMoves.add(new ChessMove(startPosition, new ChessPosition(
-                            startPosition.getRow() + (selectedPiece.getTeamColor() == TeamColor.WHITE ? 1 : -1), // Move diagonally forward
-                            startPosition.getColumn() - 1),
-                            null));
-                }
-            }
+        if (Trace.ENABLED) {
+            Trace.log("Checking if " + selectedPiece.getPieceType()
+                    + " at " + startPosition.getRow() + "," + startPosition.getColumn() + " can move");
         }
 
-        // Adding castling moves here
-        if (selectedPiece.getPieceType() == ChessPiece.PieceType.KING && selectedPiece.getNoMoves()) {
-            // Check for kingside castling
-            if (canCastleKingside(startPosition)) {
-                possibleMoves.add(new ChessMove(startPosition, new ChessPosition(startPosition.getRow(), startPosition.getColumn() + 2), null));
-            }
-            // Check for queenside castling
-            if (canCastleQueenside(startPosition)) {
-                possibleMoves.add(new ChessMove(startPosition, new ChessPosition(startPosition.getRow(), startPosition.getColumn() - 2), null));
-            }
+        // Same generator as legalMoves, just for this one square. En passant only counts for the team to move,
+        // whose moves are already worked out, so those are just picked out of the cached list
+        int square = Bitboards.square(startPosition);
+        MoveList moves;
+        if (selectedPiece.getTeamColor() == teamTurn) {
+            moves = movesFrom(square, currentMoves(), scratchMoves());
+        } else {
+            moves = generateLegalMoves(selectedPiece.getTeamColor(), Bitboards.bit(square), scratchMoves());
         }
-
-
-
-
-        System.out.println("Checking if " + selectedPiece.getPieceType()
-                + " at " + startPosition.getRow() + "," + startPosition.getColumn() + " can move");
-        System.out.println(selectedPiece.getTeamColor()
-                + " King is at " + getKing(selectedPiece.getTeamColor()).getRow()
-                + ", " + getKing(selectedPiece.getTeamColor()).getColumn());
-        possibleMoves = possibleMoves.stream() // Run through each possible move and check for check
-                .filter(this::isMoveSafe)
-                .collect(Collectors.toList());
-        // System.out.println("Valid moves for " + selectedPiece.getPieceType() + " at " + startPosition + ": " + possibleMoves);
-        System.out.println("Valid moves for " + selectedPiece.getPieceType() + " at "
-                + startPosition + ": " + possibleMoves.size());
-        for (ChessMove move : possibleMoves) {
-            System.out.println(gameBoard.getPiece(move.getStartPosition()).getPieceType()
-                    + " at " + move.getStartPosition().getRow() + "," + move.getStartPosition().getColumn()
-                    + " can move to " + move.getEndPosition().getRow() + "," + move.getEndPosition().getColumn());
+        if (Trace.ENABLED) {
+            Trace.log("Valid moves for " + selectedPiece.getPieceType() + " at "
+                    + startPosition.getRow() + "," + startPosition.getColumn() + ": " + moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                Trace.log(selectedPiece.getPieceType()
+                        + " at " + startPosition.getRow() + "," + startPosition.getColumn()
+                        + " can move to " + Bitboards.row(PackedMove.to(moves.get(i))) + ","
+                        + Bitboards.column(PackedMove.to(moves.get(i))));
+            }
         }
-        return possibleMoves;
+        return moves.toChessMoves();
     }
 
-    // Helper function to check if moving would cause check on your king
-    private boolean isMoveSafe(ChessMove move) {
-        // Original pieces
-        ChessPiece movingPiece = gameBoard.getPiece(move.getStartPosition());
-        ChessPiece capturedPiece = gameBoard.getPiece(move.getEndPosition());
-
-        // Simulate the move (Undo this in a few lines)
-        gameBoard.removePiece(move.getStartPosition());
-        gameBoard.addPiece(move.getEndPosition(), movingPiece);
-
-        // Check if the move puts the king in check
-        boolean isSafe = !isInCheck(movingPiece.getTeamColor());
-
-        // Revert the move
-        gameBoard.removePiece(move.getEndPosition());
-        gameBoard.addPiece(move.getStartPosition(), movingPiece);
-        if (capturedPiece != null) {
-            gameBoard.addPiece(move.getEndPosition(), capturedPiece);
-        }
-
-        //System.out.println("Checking move: " + move + " with piece: " + movingPiece.getPieceType() + " - Is safe: " + isSafe);
-
-        return isSafe;
-    }
-
-
     private boolean canCastleKingside(ChessPosition kingSpot) {
-        ChessPosition rookPosition = new ChessPosition(kingSpot.getRow(), 8);
-        ChessPiece rook = gameBoard.getPiece(rookPosition);
+        TeamColor team = gameBoard.getPiece(kingSpot).getTeamColor();
 
-        // Check if the rook is eligible for castling
-        if (rook == null || rook.getPieceType() != ChessPiece.PieceType.ROOK || !rook.getNoMoves()) {
+        // Check that neither the king nor this rook has moved, and that the rook is still in its corner
+        // (the board can be edited through getBoard after the rights were worked out)
+        if ((castlingRights() & (team == TeamColor.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE)) == 0
+                || Bitboards.square(kingSpot) != homeKingSquare(team)
+                || (gameBoard.pieces(team, ChessPiece.PieceType.ROOK) & Bitboards.bit(homeKingSquare(team) + 3)) == 0) {
             return false;
         }
 
         // Check if the spaces between the king and rook are empty
         for (int col = kingSpot.getColumn() + 1; col < 8; col++) {
-            if (gameBoard.getPiece(new ChessPosition(kingSpot.getRow(), col)) != null) {
+            if (gameBoard.getPiece(ChessPosition.of(kingSpot.getRow(), col)) != null) {
                 return false;
             }
         }
 
         // Ensure the king doesn't pass through or land on attacked squares
-        return !isInCheck(gameBoard.getPiece(kingSpot).getTeamColor()) &&
+        return !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn(),
+                        gameBoard.getPiece(kingSpot).getTeamColor()) &&
                 !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn() + 1,
                         gameBoard.getPiece(kingSpot).getTeamColor()) &&
                 !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn() + 2,
@@ -178,23 +201,26 @@ public class ChessGame {
 
     // Helper functions to determine if castling is possible
     private boolean canCastleQueenside(ChessPosition kingSpot) {
-        ChessPosition rookPosition = new ChessPosition(kingSpot.getRow(), 1);
-        ChessPiece rook = gameBoard.getPiece(rookPosition);
+        TeamColor team = gameBoard.getPiece(kingSpot).getTeamColor();
 
-        // Check if the rook is ineligible
-        if (rook == null || rook.getPieceType() != ChessPiece.PieceType.ROOK || !rook.getNoMoves()) {
+        // Check that neither the king nor this rook has moved, and that the rook is still in its corner
+        // (the board can be edited through getBoard after the rights were worked out)
+        if ((castlingRights() & (team == TeamColor.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE)) == 0
+                || Bitboards.square(kingSpot) != homeKingSquare(team)
+                || (gameBoard.pieces(team, ChessPiece.PieceType.ROOK) & Bitboards.bit(homeKingSquare(team) - 4)) == 0) {
             return false;
         }
 
         // Check if the spaces between the king and rook are empty
         for (int col = kingSpot.getColumn() - 1; col > 1; col--) {
-            if (gameBoard.getPiece(new ChessPosition(kingSpot.getRow(), col)) != null) {
+            if (gameBoard.getPiece(ChessPosition.of(kingSpot.getRow(), col)) != null) {
                 return false;
             }
         }
 
         // Ensure the king doesn't pass through or land on attacked squares
-        return !isInCheck(gameBoard.getPiece(kingSpot).getTeamColor()) &&
+        return !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn(),
+                        gameBoard.getPiece(kingSpot).getTeamColor()) &&
                 !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn() - 1,
                         gameBoard.getPiece(kingSpot).getTeamColor()) &&
                 !isSquareUnderAttack(kingSpot.getRow(), kingSpot.getColumn() - 2,
@@ -202,21 +228,11 @@ public class ChessGame {
     }
 
     private boolean isSquareUnderAttack(int row, int col, TeamColor teamColor) {
-        ChessPosition targetPosition = new ChessPosition(row, col);
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece == null || piece.getTeamColor() == teamColor) {
-                continue;
-            }
-            // Check if the piece can move to the target position
-            Collection<ChessMove> potentialMoves = piece.pieceMoves(gameBoard, position);
-            for (ChessMove move : potentialMoves) {
-                if (move.getEndPosition().equals(targetPosition)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return gameBoard.isSquareAttacked(Bitboards.square(row, col), opponent(teamColor));
+    }
+
+    private static TeamColor opponent(TeamColor teamColor) {
+        return teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
     }
 
     /**
@@ -226,7 +242,14 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        ChessPiece movingPiece = gameBoard.getPiece(move.getStartPosition());
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        // Off-board squares would pack onto real ones (or into the promotion bits), so turn them away first
+        if (!Bitboards.onBoard(start.getRow(), start.getColumn())
+                || !Bitboards.onBoard(end.getRow(), end.getColumn())) {
+            throw new InvalidMoveException("Invalid move: " + move);
+        }
+        ChessPiece movingPiece = gameBoard.getPiece(start);
 
         if (movingPiece == null) {
             throw new InvalidMoveException("No piece at the starting position.");
@@ -234,116 +257,626 @@ public class ChessGame {
             throw new InvalidMoveException("Not your turn.");
         }
 
-        // Get the valid moves for the piece
-        Collection<ChessMove> validMoves = validMoves(move.getStartPosition());
-
-        // Check if the move is in the valid moves collection
-        if (validMoves == null || !validMoves.contains(move)) {
+        // Check the move against the cached legal moves, packed so nothing is allocated
+        int packedMove = PackedMove.of(move);
+        if (!currentMoves().containsMove(packedMove)) {
             throw new InvalidMoveException("Invalid move: " + move);
         }
 
-        // Handle en passant kill
-        if (movingPiece.getPieceType() == ChessPiece.PieceType.PAWN &&
-                Math.abs(move.getEndPosition().getColumn() - move.getStartPosition().getColumn()) == 1 &&
-                gameBoard.getPiece(move.getEndPosition()) == null) { // Pawn moved diagonally but there's no target (en passant)
-            int capturedRow = move.getStartPosition().getRow(); // Same row as the moving pawn
-            int capturedCol = move.getEndPosition().getColumn(); // Column of the target
-            gameBoard.removePiece(new ChessPosition(capturedRow, capturedCol));
-        }
-
-        // Handle Castling
-        if (movingPiece.getPieceType() == ChessPiece.PieceType.KING &&
-                Math.abs(move.getEndPosition().getColumn() - move.getStartPosition().getColumn()) == 2) { // King moved 2, so must be castle
-            // Right castling
-            if (move.getEndPosition().getColumn() > move.getStartPosition().getColumn()) {
-                ChessPosition rookStart = new ChessPosition(move.getStartPosition().getRow(), 8);
-                ChessPosition rookEnd = new ChessPosition(move.getStartPosition().getRow(),
-                        move.getEndPosition().getColumn() - 1);
-                ChessPiece rook = gameBoard.getPiece(rookStart);
-                gameBoard.removePiece(rookStart);
-                gameBoard.addPiece(rookEnd, rook);
+        // Castling, en passant and promotion are all handled in doMove
+        doMove(packedMove);
+        currentMoves(); // Work out the new status now, once, so asking about it later is just a field read
+
+        // Turn was changed by doMove
+        if (Trace.ENABLED) {
+            Trace.log("Turn: " + opponent(teamTurn) + " changes to " + teamTurn);
+        }
+    }
+
+    /**
+     * Gets a 64-bit Zobrist key for the position: pieces, team to move, castling rights, and
+     * the en passant file when an en passant capture is actually available. Equal positions
+     * get equal keys; the piece part is kept up to date by the board as moves are made
+     *
+     * @return the position's key
+     */
+    public long getZobristKey() {
+        long key = gameBoard.zobristKey() ^ Zobrist.castling(castlingRights());
+        int enPassantSquare = enPassantSquare();
+        if (teamTurn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        if (enPassantSquare != NO_SQUARE && (Bitboards.pawnAttacks(opponent(teamTurn), enPassantSquare)
+                & gameBoard.pieces(teamTurn, ChessPiece.PieceType.PAWN)) != 0) {
+            key ^= Zobrist.enPassantFile(enPassantSquare);
+        }
+        return key;
+    }
+
+    /**
+     * Gets every legal move for the team whose turn it is, found in one pass over the board
+     * rather than a validMoves call per square
+     *
+     * @return all legal moves, empty if the team to move is checkmated or stalemated
+     */
+    public Collection<ChessMove> legalMoves() {
+        return currentMoves().toChessMoves();
+    }
+
+    /**
+     * Same as legalMoves(), but writes packed moves (see PackedMove) into a list the caller
+     * keeps, so generating moves allocates nothing once the list is big enough
+     *
+     * @param moves list to fill; anything already in it is cleared first
+     * @return the same list
+     */
+    public MoveList legalMoves(MoveList moves) {
+        return generateLegalMoves(teamTurn, -1L, moves);
+    }
+
+    ////////////////////// STATUS ////////////////////////
+
+    /**
+     * Where the game stands for the team to move
+     */
+    public enum GameStatus {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        DRAW_REPETITION,
+        DRAW_50,
+        DRAW_MATERIAL;
+
+        /**
+         * @return True if no more moves should be played
+         */
+        public boolean isTerminal() {
+            return this != ONGOING && this != CHECK;
+        }
+    }
+
+    // Legal moves and status for the team to move, worked out together and reused until the position
+    // changes. The key alone can't tell a position apart from the same one reached again later, which
+    // may be a repetition, so the length of the key history is checked too
+    private transient MoveList cachedMoves;
+    private transient GameStatus cachedStatus;
+    private transient boolean cachedInCheck;
+    private transient long cachedKey;
+    private transient int cachedHistoryLength;
+
+    /**
+     * Gets the status of the position for the team to move. It's worked out once per position
+     * (makeMove does it straight away), so calling this repeatedly costs next to nothing
+     *
+     * @return the status; checkmate and stalemate come before any draw, and check only shows when
+     * the game isn't drawn
+     */
+    public GameStatus getStatus() {
+        currentMoves();
+        return cachedStatus;
+    }
+
+    // Legal moves for the team to move, regenerated only when the position has changed since last time
+    private MoveList currentMoves() {
+        long key = getZobristKey();
+        if (cachedStatus != null && key == cachedKey && historyLength() == cachedHistoryLength) {
+            return cachedMoves;
+        }
+        if (cachedMoves == null) {
+            cachedMoves = new MoveList();
+        }
+        generateLegalMoves(teamTurn, -1L, cachedMoves);
+        cachedInCheck = isInCheck(teamTurn);
+        cachedStatus = statusOf(cachedMoves, cachedInCheck);
+        cachedKey = key;
+        cachedHistoryLength = historyLength();
+        return cachedMoves;
+    }
+
+    private GameStatus statusOf(MoveList moves, boolean inCheck) {
+        if (moves.isEmpty()) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        DrawReason draw = getDrawReason();
+        if (draw != null) {
+            return switch (draw) {
+                case REPETITION -> GameStatus.DRAW_REPETITION;
+                case FIFTY_MOVES -> GameStatus.DRAW_50;
+                case INSUFFICIENT_MATERIAL -> GameStatus.DRAW_MATERIAL;
+            };
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
+
+    private void clearStatus() {
+        cachedStatus = null;
+    }
+
+    // The moves in the list that start on the given square, copied into another list
+    private static MoveList movesFrom(int square, MoveList moves, MoveList into) {
+        into.clear();
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.from(moves.get(i)) == square) {
+                into.add(moves.get(i));
             }
-            // Left castling
-            else {
-                ChessPosition rookStart = new ChessPosition(move.getStartPosition().getRow(), 1);
-                ChessPosition rookEnd = new ChessPosition(move.getStartPosition().getRow(),
-                        move.getEndPosition().getColumn() + 1);
-                ChessPiece rook = gameBoard.getPiece(rookStart);
-                gameBoard.removePiece(rookStart);
-                gameBoard.addPiece(rookEnd, rook);
+        }
+        return into;
+    }
+
+    ////////////////////// MOVE GENERATION ////////////////////////
+
+    // Reused by validMoves, makeMove and the checkmate and stalemate tests. Not serialized, so created on first use
+    private transient MoveList scratchMoves;
+    // Squares each pinned piece may move to, by square. Only read for pieces found pinned in the same generation
+    private transient long[] pinRays = new long[64];
+
+    private MoveList scratchMoves() {
+        if (scratchMoves == null) {
+            scratchMoves = new MoveList();
+        }
+        return scratchMoves;
+    }
+
+    // Legal moves for a team's pieces on the squares in fromMask, written straight into the list as packed
+    // moves. Everything is worked out once up front: the pieces checking the king, the squares that capture
+    // or block a single checker (the check mask), and the ray each pinned piece has to stay on. With those,
+    // a non-king move is legal exactly when it lands inside both masks, so only king moves (is the target
+    // attacked?) and en passant (which removes two pieces from a row at once) need an explicit test
+    private MoveList generateLegalMoves(TeamColor team, long fromMask, MoveList moves) {
+        moves.clear();
+        TeamColor enemy = opponent(team);
+        long own = gameBoard.pieces(team);
+        long occupied = gameBoard.occupied();
+
+        long king = gameBoard.pieces(team, ChessPiece.PieceType.KING);
+        int kingSquare = king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+        long checkers = kingSquare == NO_SQUARE ? 0L : gameBoard.attackersOf(kingSquare, enemy, occupied);
+        long checkMask = -1L; // Squares a non-king move has to end on
+        if (Long.bitCount(checkers) > 1) {
+            checkMask = 0L; // Double check, only the king can move
+        } else if (checkers != 0) {
+            checkMask = checkers | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+        }
+
+        // Enemy sliders lined up with the king, looking through our own pieces. One of ours alone
+        // between one of them and the king is pinned to the squares between them (or capturing it)
+        long pinned = 0L;
+        if (kingSquare != NO_SQUARE) {
+            long enemies = occupied & ~own;
+            long queens = gameBoard.pieces(enemy, ChessPiece.PieceType.QUEEN);
+            long snipers = (Bitboards.rookAttacks(kingSquare, enemies)
+                    & (gameBoard.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                    | (Bitboards.bishopAttacks(kingSquare, enemies)
+                    & (gameBoard.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+            while (snipers != 0) {
+                int sniper = Long.numberOfTrailingZeros(snipers);
+                snipers &= snipers - 1;
+                long blockers = Bitboards.between(kingSquare, sniper) & occupied;
+                if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                    pinned |= blockers;
+                    pinRays[Long.numberOfTrailingZeros(blockers)] = Bitboards.between(kingSquare, sniper)
+                            | Bitboards.bit(sniper);
+                }
             }
         }
 
-        movingPiece = move.getPromotionPiece() == null ? movingPiece : new ChessPiece(movingPiece.getTeamColor(),
-                move.getPromotionPiece());
+        long pieces = own & ~king & fromMask;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long allowed = (pinned & Bitboards.bit(from)) != 0 ? checkMask & pinRays[from] : checkMask;
+            gameBoard.getPiece(from).addMoves(moves, gameBoard, from, allowed);
+        }
 
-        // Do the move
-        gameBoard.removePiece(move.getStartPosition());
-        gameBoard.addPiece(move.getEndPosition(), movingPiece);
+        // The king can go anywhere not attacked once it has moved (so it doesn't block a slider's ray)
+        if ((king & fromMask) != 0) {
+            int start = moves.size();
+            gameBoard.getPiece(kingSquare).addMoves(moves, gameBoard, kingSquare, -1L);
+            int kept = start;
+            for (int i = start; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (gameBoard.attackersOf(PackedMove.to(move), enemy, occupied ^ king) == 0) {
+                    moves.set(kept++, move);
+                }
+            }
+            moves.truncate(kept);
+        }
 
-        // Setup for en passant
-        // Reset all pawns passantable status (Cause you can only do it the turn after)
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece != null && piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-                piece.setPassantable(false);
+        // En passant takes a pawn that isn't on the target square, so the check mask can't judge it
+        int enPassantSquare = enPassantSquare();
+        if (team == teamTurn && enPassantSquare != NO_SQUARE) {
+            int start = moves.size();
+            long takers = Bitboards.pawnAttacks(enemy, enPassantSquare)
+                    & gameBoard.pieces(team, ChessPiece.PieceType.PAWN) & fromMask;
+            while (takers != 0) {
+                int from = Long.numberOfTrailingZeros(takers);
+                takers &= takers - 1;
+                moves.add(PackedMove.of(from, enPassantSquare, null, PackedMove.EN_PASSANT | PackedMove.CAPTURE));
             }
+            keepLegal(team, moves, start);
         }
 
-        // Current pawn is passantable if it moved two squares forward
-        if (movingPiece.getPieceType() == ChessPiece.PieceType.PAWN &&
-                Math.abs(move.getEndPosition().getRow() - move.getStartPosition().getRow()) == 2) {
-            movingPiece.setPassantable(true);
+        // Castling already checks every square the king touches
+        if ((king & fromMask) != 0 && kingSquare == homeKingSquare(team) && checkers == 0) {
+            ChessPosition kingSpot = ChessPosition.of(kingSquare);
+            if (canCastleKingside(kingSpot)) {
+                moves.add(PackedMove.of(kingSquare, kingSquare + 2, null, PackedMove.CASTLE));
+            }
+            if (canCastleQueenside(kingSpot)) {
+                moves.add(PackedMove.of(kingSquare, kingSquare - 2, null, PackedMove.CASTLE));
+            }
         }
+        return moves;
+    }
+
+    // Filters the moves from start on down to the ones that don't leave the king attacked, in place, by playing
+    // each one. Only en passant still needs this
+    private void keepLegal(TeamColor team, MoveList moves, int start) {
+        int kept = start;
+        for (int i = start; i < moves.size(); i++) {
+            int move = moves.get(i);
+            doMove(move);
+            boolean legal = !isInCheck(team);
+            undoMove();
+            if (legal) {
+                moves.set(kept++, move);
+            }
+        }
+        moves.truncate(kept);
+    }
+
+    ////////////////////// MAKE / UNMAKE ////////////////////////
+
+    // Undo record layout: from and to squares, what kind of move it was, the turn, and the whole
+    // state word it replaced in the top half
+    private static final int UNDO_TO_SHIFT = 6;
+    private static final int UNDO_KIND_SHIFT = 12;
+    private static final int UNDO_TURN_SHIFT = 14;
+    private static final int UNDO_STATE_SHIFT = 32;
+
+    private static final int KIND_NORMAL = 0;
+    private static final int KIND_EN_PASSANT = 1;
+    private static final int KIND_CASTLE = 2;
+
+    // Castling rights that survive a move touching each square (moving a king or rook, or capturing a rook)
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[Bitboards.square(1, 5)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[Bitboards.square(1, 8)] &= ~WHITE_KINGSIDE;
+        CASTLING_KEPT[Bitboards.square(1, 1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[Bitboards.square(8, 5)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[Bitboards.square(8, 8)] &= ~BLACK_KINGSIDE;
+        CASTLING_KEPT[Bitboards.square(8, 1)] &= ~BLACK_QUEENSIDE;
+    }
 
-        // Log moves to make impossible to castle
-        movingPiece.setNoMoves(false);
+    /**
+     * Plays a move without checking that it is legal, remembering what it needs so
+     * undoMove can take it back. Handles castling, en passant and promotion, and
+     * passes the turn to the other team. The start position must hold a piece.
+     *
+     * @param move chess move to play
+     */
+    public void doMove(ChessMove move) {
+        doMove(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
 
-        // Change turn
-        System.out.println("Turn: " + teamTurn + " changes to " + (teamTurn == TeamColor.WHITE ? "BLACK" : "WHITE"));
-        teamTurn = (teamTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+    /**
+     * Same as doMove(ChessMove) for a packed move, such as one from legalMoves(MoveList)
+     *
+     * @param move packed move to play (see PackedMove)
+     */
+    public void doMove(int move) {
+        doMove(PackedMove.from(move), PackedMove.to(move), PackedMove.promotion(move));
     }
 
+    private void doMove(int from, int to, ChessPiece.PieceType promotion) {
+        pushKey(getZobristKey());
+        ChessPiece movingPiece = gameBoard.clear(from);
+        TeamColor team = movingPiece.getTeamColor();
+
+        long record = from | ((long) to << UNDO_TO_SHIFT)
+                | ((long) teamTurn.ordinal() << UNDO_TURN_SHIFT)
+                | ((long) state << UNDO_STATE_SHIFT);
+
+        ChessPiece capturedPiece = gameBoard.clear(to);
+        ChessPiece.PieceType type = movingPiece.getPieceType();
+        if (type == ChessPiece.PieceType.PAWN && to == enPassantSquare() && (from & 7) != (to & 7)) {
+            // Pawn moved diagonally onto the skipped square, so the pawn behind it is the one taken
+            capturedPiece = gameBoard.clear(team == TeamColor.WHITE ? to - 8 : to + 8);
+            record |= (long) KIND_EN_PASSANT << UNDO_KIND_SHIFT;
+        } else if (type == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            // King moved 2, so must be castle. The rook jumps to the square the king passed over
+            gameBoard.put((from + to) / 2, gameBoard.clear(to > from ? from + 3 : from - 4));
+            record |= (long) KIND_CASTLE << UNDO_KIND_SHIFT;
+        }
+
+        gameBoard.put(to, promotion == null ? movingPiece : ChessPiece.of(team, promotion));
+
+        // Update the state the board can't show, all in the one word
+        int next = state & ~(STATE_EP_MASK | STATE_CLOCK_MASK)
+                & (CASTLING_KEPT[from] & CASTLING_KEPT[to] | ~STATE_CASTLING_MASK);
+        if (type == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16) {
+            next |= ((from & 7) + 1) << STATE_EP_SHIFT;
+        }
+        if (type != ChessPiece.PieceType.PAWN && capturedPiece == null) {
+            next |= Math.min(halfmoveClock() + 1, MAX_CLOCK) << STATE_CLOCK_SHIFT;
+        }
+        if (team == TeamColor.BLACK) {
+            next += 1 << STATE_FULLMOVE_SHIFT;
+        }
+        state = next;
+        teamTurn = opponent(team);
+
+        pushUndo(record, movingPiece, capturedPiece);
+    }
 
     /**
-     * Determines if the given team is in check
+     * Takes back the last move played with doMove (or makeMove), restoring the board,
+     * castling rights, en passant square, move clock and turn exactly as they were
      *
-     * @param teamColor which team to check for check
-     * @return True if the specified team is in check
+     * @throws IllegalStateException if there is no move to take back
      */
-    public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPosition = getKing(teamColor);
-        if(kingPosition == null) { return false;} // Skip check if there's no king
-
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece == null || piece.getTeamColor() == teamColor) { continue; } // Skip if space empty or friendly
-
-            Collection<ChessMove> pieceMoves = piece.pieceMoves(gameBoard, position);
-            for (ChessMove move : pieceMoves) {
-                if (move.getEndPosition().equals(kingPosition)) {
-                    // System.out.println(teamColor + " in check at "
-                    // + position.getRow() + "," + position.getColumn() + " with "
-                    // + piece.getTeamColor() + " " + piece.getPieceType());
-                    return true;
-                }
+    public void undoMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to undo.");
+        }
+        undoCount--;
+        long record = undoRecords[undoCount];
+        ChessPiece movingPiece = undoMoved[undoCount];
+        ChessPiece capturedPiece = undoCaptured[undoCount];
+        undoMoved[undoCount] = null;
+        undoCaptured[undoCount] = null;
+
+        int from = (int) (record & 63);
+        int to = (int) ((record >>> UNDO_TO_SHIFT) & 63);
+        int kind = (int) ((record >>> UNDO_KIND_SHIFT) & 3);
+
+        gameBoard.clear(to);
+        gameBoard.put(from, movingPiece); // Puts back the pawn if it had promoted
+        if (kind == KIND_EN_PASSANT) {
+            gameBoard.put(movingPiece.getTeamColor() == TeamColor.WHITE ? to - 8 : to + 8, capturedPiece);
+        } else {
+            if (capturedPiece != null) {
+                gameBoard.put(to, capturedPiece);
+            }
+            if (kind == KIND_CASTLE) {
+                gameBoard.put(to > from ? from + 3 : from - 4, gameBoard.clear((from + to) / 2));
             }
         }
-        return false;
+
+        teamTurn = ((record >>> UNDO_TURN_SHIFT) & 1) == 0 ? TeamColor.WHITE : TeamColor.BLACK;
+        state = (int) (record >>> UNDO_STATE_SHIFT);
+        keyCount--;
     }
 
+    private void pushUndo(long record, ChessPiece movingPiece, ChessPiece capturedPiece) {
+        if (undoCount == undoRecords.length) {
+            undoRecords = Arrays.copyOf(undoRecords, undoCount * 2);
+            undoMoved = Arrays.copyOf(undoMoved, undoCount * 2);
+            undoCaptured = Arrays.copyOf(undoCaptured, undoCount * 2);
+        }
+        undoRecords[undoCount] = record;
+        undoMoved[undoCount] = movingPiece;
+        undoCaptured[undoCount] = capturedPiece;
+        undoCount++;
+    }
+
+    ////////////////////// GAME STATE WORD ////////////////////////
+
+    // State word layout: castling rights in the low 4 bits, then the en passant file + 1 (0 when the
+    // last move wasn't a double push), the halfmove clock, and the fullmove number in the top half
+    private static final int STATE_CASTLING_MASK = 0xF;
+    private static final int STATE_EP_SHIFT = 4;
+    private static final int STATE_EP_MASK = 0xF << STATE_EP_SHIFT;
+    private static final int STATE_CLOCK_SHIFT = 8;
+    private static final int STATE_CLOCK_MASK = 0xFF << STATE_CLOCK_SHIFT;
+    private static final int STATE_FULLMOVE_SHIFT = 16;
+    static final int MAX_CLOCK = 0xFF; // Clock stops counting here, well past the fifty-move rule
+    static final int MAX_FULLMOVE = 0xFFFF; // Most the top half of the state word holds
+
+    private static final int INITIAL_STATE = initialState(WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+
+    // New game state with the given castling rights, no en passant, and the clocks at their starting values
+    private static int initialState(int castlingRights) {
+        return castlingRights | (1 << STATE_FULLMOVE_SHIFT);
+    }
 
-    // Helper method to find the king for the team
-    private ChessPosition getKing(TeamColor teamColor) {
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && piece.getTeamColor() == teamColor) {
-                return position;
+    // Sets the state a FEN gives, once the board and turn are in place. Castling rights the board can't back up
+    // (king or rook gone from its starting square) and an en passant square with no pawn that could have
+    // just skipped it are dropped, since playing either would move a piece that isn't there
+    void loadState(int castlingRights, int enPassantSquare, int halfmoveClock, int fullmoveNumber) {
+        int next = castlingRights & castlingRightsFor(gameBoard);
+        if (enPassantSquare != NO_SQUARE) {
+            int pawnSquare = teamTurn == TeamColor.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+            int startSquare = teamTurn == TeamColor.WHITE ? enPassantSquare + 8 : enPassantSquare - 8;
+            ChessPiece pawn = gameBoard.getPiece(pawnSquare);
+            if (pawn != null && pawn.getPieceType() == ChessPiece.PieceType.PAWN && pawn.getTeamColor() != teamTurn
+                    && gameBoard.getPiece(enPassantSquare) == null && gameBoard.getPiece(startSquare) == null) {
+                next |= ((enPassantSquare & 7) + 1) << STATE_EP_SHIFT;
             }
         }
-        System.out.println(teamColor + " King not currently on board");
+        next |= Math.min(halfmoveClock, MAX_CLOCK) << STATE_CLOCK_SHIFT;
+        next |= Math.min(fullmoveNumber, MAX_FULLMOVE) << STATE_FULLMOVE_SHIFT;
+        state = next;
+        clearStatus();
+    }
+
+    int castlingRights() {
+        return state & STATE_CASTLING_MASK;
+    }
+
+    // Square a pawn skipped over last move, capturable en passant, or NO_SQUARE. The file is all that's
+    // stored; the row follows from whose turn it is
+    int enPassantSquare() {
+        int file = ((state & STATE_EP_MASK) >>> STATE_EP_SHIFT) - 1;
+        if (file < 0) {
+            return NO_SQUARE;
+        }
+        return (teamTurn == TeamColor.WHITE ? Bitboards.square(6, 1) : Bitboards.square(3, 1)) + file;
+    }
+
+    // Moves since the last capture or pawn move
+    int halfmoveClock() {
+        return (state & STATE_CLOCK_MASK) >>> STATE_CLOCK_SHIFT;
+    }
+
+    // Starts at 1 and goes up after each black move
+    int fullmoveNumber() {
+        return state >>> STATE_FULLMOVE_SHIFT;
+    }
+
+    private void pushKey(long key) {
+        if (keyHistory == null) {
+            keyHistory = Arrays.copyOf(repetitionKeys, Math.max(64, repetitionKeys.length * 2));
+            keyCount = repetitionKeys.length;
+        } else if (keyCount == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, keyCount * 2);
+        }
+        keyHistory[keyCount++] = key;
+    }
+
+    private int historyLength() {
+        return keyHistory != null ? keyCount : repetitionKeys.length;
+    }
+
+    // Keys of the positions since the last capture or pawn move, oldest first
+    private long[] repetitionWindow() {
+        if (keyHistory == null) {
+            return repetitionKeys; // Nothing played since it was loaded
+        }
+        int window = Math.min(halfmoveClock(), keyCount);
+        return Arrays.copyOfRange(keyHistory, keyCount - window, keyCount);
+    }
+
+    ////////////////////// DRAWS ////////////////////////
+
+    /**
+     * Ways a game can be drawn without either side running out of moves
+     */
+    public enum DrawReason {
+        REPETITION, // Same position with the same team to move for the third time
+        FIFTY_MOVES, // Fifty moves each without a capture or pawn move
+        INSUFFICIENT_MATERIAL // Neither side has enough left to checkmate
+    }
+
+    /**
+     * @return True if the position is drawn by repetition, the fifty-move rule or insufficient material
+     */
+    public boolean isDraw() {
+        return getDrawReason() != null;
+    }
+
+    /**
+     * Works out why the current position is a draw. Only looks back as far as the last capture or
+     * pawn move, since no position before one of those can come up again
+     *
+     * @return the reason, or null if the game isn't drawn
+     */
+    public DrawReason getDrawReason() {
+        if (hasInsufficientMaterial()) {
+            return DrawReason.INSUFFICIENT_MATERIAL;
+        }
+        if (halfmoveClock() >= 100) {
+            return DrawReason.FIFTY_MOVES;
+        }
+        if (repetitions() >= 2) {
+            return DrawReason.REPETITION;
+        }
         return null;
     }
+
+    // How many earlier times the current position has come up, with the same team to move
+    int repetitions() {
+        long[] keys = keyHistory != null ? keyHistory : repetitionKeys;
+        int count = historyLength();
+        int oldest = Math.max(0, count - halfmoveClock());
+        long key = getZobristKey();
+        int repetitions = 0;
+        for (int i = count - 2; i >= oldest; i -= 2) {
+            if (keys[i] == key) {
+                repetitions++;
+            }
+        }
+        return repetitions;
+    }
+
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    // Bare kings, a single minor piece, or bishops that all stand on the same color of square
+    private boolean hasInsufficientMaterial() {
+        long kings = (ChessBoard.materialUnit(TeamColor.WHITE, ChessPiece.PieceType.KING)
+                | ChessBoard.materialUnit(TeamColor.BLACK, ChessPiece.PieceType.KING)) * 0xF;
+        long material = gameBoard.materialSignature() & ~kings;
+        if (material == 0) {
+            return true;
+        }
+        for (TeamColor team : TeamColor.values()) {
+            if (material == ChessBoard.materialUnit(team, ChessPiece.PieceType.KNIGHT)
+                    || material == ChessBoard.materialUnit(team, ChessPiece.PieceType.BISHOP)) {
+                return true;
+            }
+        }
+        long bishopsOnly = (ChessBoard.materialUnit(TeamColor.WHITE, ChessPiece.PieceType.BISHOP)
+                | ChessBoard.materialUnit(TeamColor.BLACK, ChessPiece.PieceType.BISHOP)) * 0xF;
+        if ((material & ~bishopsOnly) != 0) {
+            return false;
+        }
+        long bishops = gameBoard.pieces(TeamColor.WHITE, ChessPiece.PieceType.BISHOP)
+                | gameBoard.pieces(TeamColor.BLACK, ChessPiece.PieceType.BISHOP);
+        return (bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0;
+    }
+
+    private static int homeKingSquare(TeamColor team) {
+        return team == TeamColor.WHITE ? Bitboards.square(1, 5) : Bitboards.square(8, 5);
+    }
+
+    // Castling rights for a board we didn't watch being played: a king and rook still on their starting
+    // squares are assumed not to have moved
+    private static int castlingRightsFor(ChessBoard board) {
+        int rights = 0;
+        for (TeamColor team : TeamColor.values()) {
+            int row = team == TeamColor.WHITE ? 1 : 8;
+            ChessPiece king = board.getPiece(Bitboards.square(row, 5));
+            if (king == null || king.getPieceType() != ChessPiece.PieceType.KING || king.getTeamColor() != team) {
+                continue;
+            }
+            if (isRook(board.getPiece(Bitboards.square(row, 8)), team)) {
+                rights |= team == TeamColor.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            }
+            if (isRook(board.getPiece(Bitboards.square(row, 1)), team)) {
+                rights |= team == TeamColor.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            }
+        }
+        return rights;
+    }
+
+    private static boolean isRook(ChessPiece piece, TeamColor team) {
+        return piece != null && piece.getPieceType() == ChessPiece.PieceType.ROOK && piece.getTeamColor() == team;
+    }
+
+
+    /**
+     * Determines if the given team is in check
+     *
+     * @param teamColor which team to check for check
+     * @return True if the specified team is in check
+     */
+    public boolean isInCheck(TeamColor teamColor) {
+        if (teamColor == teamTurn && cachedStatus != null && getZobristKey() == cachedKey) {
+            return cachedInCheck;
+        }
+        long king = gameBoard.pieces(teamColor, ChessPiece.PieceType.KING);
+        if (king == 0) { return false; } // Skip check if there's no king
+
+        // Look outward from the king instead of generating every enemy move
+        return gameBoard.isSquareAttacked(Long.numberOfTrailingZeros(king), opponent(teamColor));
+    }
+
+
     /**
      * Determines if the given team is in checkmate
      *
@@ -351,25 +884,21 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        System.out.println("Checking Checkmate for " + teamColor);
+        if (Trace.ENABLED) {
+            Trace.log("Checking Checkmate for " + teamColor);
+        }
+        if (teamColor == teamTurn) {
+            return getStatus() == GameStatus.CHECKMATE;
+        }
         if(!isInCheck(teamColor)){ return false; }
 
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece == null || piece.getTeamColor() != teamColor) { continue; } // Skip if space empty or friendly
-
-            Collection<ChessMove> validMoves = validMoves(position); // Get all moves of this piece
-
-            // Check if any move removes the check
-            for (ChessMove move : validMoves) {
-                if (isMoveSafe(move)) {
-                    System.out.println(teamColor + " can still move: " +
-                            gameBoard.getPiece(move.getStartPosition()).getPieceType());
-                    return false; // Found a move that removes the check
-                }
-            }
+        // One pass over the board instead of validMoves for every square
+        if (!generateLegalMoves(teamColor, -1L, scratchMoves()).isEmpty()) {
+            return false; // Found a move that removes the check
+        }
+        if (Trace.ENABLED) {
+            Trace.log(teamColor + " is in Checkmate...");
         }
-        System.out.println(teamColor + " is in Checkmate...");
         return true;
     }
 
@@ -381,23 +910,18 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        System.out.println("Checking Stalemate for " + teamColor);
+        if (Trace.ENABLED) {
+            Trace.log("Checking Stalemate for " + teamColor);
+        }
+        if (teamColor == teamTurn) {
+            return getStatus() == GameStatus.STALEMATE;
+        }
         if(isInCheck(teamColor)) {return false;}
-        for (ChessPosition position : gameBoard.getAllPositions()) {
-            ChessPiece piece = gameBoard.getPiece(position);
-            if (piece == null || piece.getTeamColor() != teamColor) { continue; } // Skip if space empty or friendly
-
-            if(!validMoves(position).isEmpty()) {
-                System.out.println(teamColor + " has moves:");
-                for (ChessMove move : validMoves(position)) {
-                    System.out.println(gameBoard.getPiece(position).getPieceType()
-                            + " at " + position.getRow() + "," + position.getColumn() + " can move to "
-                            + move.getEndPosition().getRow() + "," + move.getEndPosition().getColumn());
-                }
-                return false;
-            }
+        MoveList moves = generateLegalMoves(teamColor, -1L, scratchMoves());
+        if (Trace.ENABLED && !moves.isEmpty()) {
+            Trace.log(teamColor + " has " + moves.size() + " moves");
         }
-        return true;
+        return moves.isEmpty();
     }
 
     // returns state of game
@@ -416,6 +940,11 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         gameBoard = board;
+        state = initialState(castlingRightsFor(board));
+        repetitionKeys = new long[0];
+        keyHistory = null;
+        clearStatus();
+        undoCount = 0; // Moves made on the old board can't be taken back on this one
     }
 
     /**
@@ -426,4 +955,28 @@ public class ChessGame {
     public ChessBoard getBoard() {
         return gameBoard;
     }
+
+    // Gson's usual field-by-field JSON, except that the repetition window is copied into repetitionKeys
+    // just before a game is written, rather than after every move
+    static final class GsonAdapter implements TypeAdapterFactory {
+
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            TypeAdapter<T> fields = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    if (value instanceof ChessGame game) {
+                        game.repetitionKeys = game.repetitionWindow();
+                    }
+                    fields.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    return fields.read(in);
+                }
+            };
+        }
+    }
 }
@@ -14,6 +14,33 @@ public class ChessMove {
     private ChessPosition endPosition;
     private ChessPiece.PieceType promotionPiece;
 
+    // Every move a piece could ever make (queen lines, knight jumps, and pawn promotions), indexed by
+    // the move part of a packed move. Everything else in the engine hands these out instead of new moves
+    private static final ChessMove[] MOVES = new ChessMove[1 << 15];
+
+    static {
+        for (int from = 0; from < 64; from++) {
+            long targets = Bitboards.queenAttacks(from, 0L) | Bitboards.knightAttacks(from);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                MOVES[PackedMove.of(from, to)] = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), null);
+
+                // A pawn reaching the last row from one row back, straight or diagonally
+                boolean whitePromotion = Bitboards.row(from) == 7 && Bitboards.row(to) == 8;
+                boolean blackPromotion = Bitboards.row(from) == 2 && Bitboards.row(to) == 1;
+                if ((whitePromotion || blackPromotion) && Math.abs(Bitboards.column(from) - Bitboards.column(to)) <= 1) {
+                    for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                        if (type != ChessPiece.PieceType.KING && type != ChessPiece.PieceType.PAWN) {
+                            MOVES[PackedMove.of(from, to, type)] = new ChessMove(ChessPosition.of(from),
+                                    ChessPosition.of(to), type);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
         this.startPosition = startPosition;
@@ -21,6 +48,36 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Gets the shared instance of a move instead of allocating a new one (falls back to a new
+     * one for moves no piece could make, like positions off the board)
+     *
+     * @return the cached move
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (Bitboards.onBoard(startPosition.getRow(), startPosition.getColumn())
+                && Bitboards.onBoard(endPosition.getRow(), endPosition.getColumn())) {
+            ChessMove move = MOVES[PackedMove.of(Bitboards.square(startPosition), Bitboards.square(endPosition),
+                    promotionPiece)];
+            if (move != null) {
+                return move;
+            }
+        }
+        return new ChessMove(startPosition, endPosition, promotionPiece);
+    }
+
+    // The cached move for a packed move, ignoring its flags
+    static ChessMove of(int packedMove) {
+        ChessMove move = MOVES[packedMove & ((1 << 15) - 1)];
+        if (move == null) {
+            int from = PackedMove.from(packedMove);
+            int to = PackedMove.to(packedMove);
+            move = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), PackedMove.promotion(packedMove));
+        }
+        return move;
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -47,6 +104,9 @@ public class ChessMove {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -1,16 +1,23 @@
 package chess;
 
-import java.util.List;
-import java.util.ArrayList;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Objects;
 
 /**
- * Represents a single chess piece
+ * Represents a single chess piece. Pieces are immutable; whether a king or rook has moved
+ * and which pawn can be taken en passant is kept by ChessGame, not the pieces. That lets
+ * every board share the 12 pieces from {@link #of}, whatever game they are in
  * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessPiece.GsonAdapter.class)
 public class ChessPiece {
 
     /**
@@ -27,14 +34,33 @@ public class ChessPiece {
 
     private final PieceType type;
     private final ChessGame.TeamColor color;
-    private Boolean passantable = false;
-    private Boolean noMoves = true;
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.type = type;
         this.color = pieceColor;
     }
 
+    // One of each piece, in ChessBoard.pieceIndex order
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[color.ordinal() * 6 + type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    /**
+     * Gets the shared piece of the given color and type. Pieces never change, so the board,
+     * promotions and deserialized games all use these instead of making their own
+     *
+     * @return the canonical piece, equal to new ChessPiece(color, type)
+     */
+    public static ChessPiece of(ChessGame.TeamColor color, PieceType type) {
+        return PIECES[color.ordinal() * 6 + type.ordinal()];
+    }
+
     /**
      * @return Which team this chess piece belongs to
      */
@@ -49,14 +75,6 @@ public class ChessPiece {
         return type;
     }
 
-    public Boolean getPassantable() { return passantable; }
-
-    public void setPassantable(Boolean passantable) { this.passantable = passantable; }
-
-    public Boolean getNoMoves() { return noMoves; }
-
-    public void setNoMoves(Boolean noMoves) { this.noMoves = noMoves; }
-
     /**
      * Calculates all the positions a chess piece can move to
      * Does not take into account moves that are illegal due to leaving the king in
@@ -65,257 +83,85 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        List<ChessMove> validMoves = new ArrayList<ChessMove>();
+        MoveList moves = new MoveList(32);
+        addMoves(moves, board, Bitboards.square(myPosition), -1L);
+        return moves.toChessMoves(); // Only turned into ChessMoves here, for callers outside the engine
+    }
+
+    /**
+     * Writes the same moves pieceMoves finds into a packed move list, without allocating
+     *
+     * @param allowed squares a move may end on (ChessGame passes the check mask); ignored for kings
+     */
+    void addMoves(MoveList moves, ChessBoard board, int from, long allowed) {
+        long own = board.pieces(color);
+        long enemies = board.pieces(color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
 
+        long targets;
         switch (type) {
             case PAWN:
                 // Split out to comply with quality code standards
-                validMoves.addAll(addPawnMoves(board, myPosition));
-                break;
-            case ROOK:
-                // Positive row movement
-                addLinearMoves(validMoves, board, myPosition, 1, 0);
-                // Negative row movement
-                addLinearMoves(validMoves, board, myPosition, -1, 0);
-                // Positive col movement
-                addLinearMoves(validMoves, board, myPosition, 0, 1);
-                // Negative col movement
-                addLinearMoves(validMoves, board, myPosition, 0, -1);
-                break;
-            case KNIGHT:
-                // Split out to comply with code quality standards
-                validMoves.addAll(addKnightMoves(board, myPosition));
-                break;
-            case BISHOP:
-                // Calculate bishop moves
-                // Positive right movement
-                addLinearMoves(validMoves, board, myPosition, 1, 1);
-                // Negative right movement
-                addLinearMoves(validMoves, board, myPosition, -1, 1);
-                // Positive left movement
-                addLinearMoves(validMoves, board, myPosition, 1, -1);
-                // Negative right movement
-                addLinearMoves(validMoves, board, myPosition, -1, -1);
-                break;
-            case QUEEN:
-                // Positive row movement
-                addLinearMoves(validMoves, board, myPosition, 1, 0);
-                // Negative row movement
-                addLinearMoves(validMoves, board, myPosition, -1, 0);
-                // Positive col movement
-                addLinearMoves(validMoves, board, myPosition, 0, 1);
-                // Negative col movement
-                addLinearMoves(validMoves, board, myPosition, 0, -1);
-                // Positive right movement
-                addLinearMoves(validMoves, board, myPosition, 1, 1);
-                // Negative right movement
-                addLinearMoves(validMoves, board, myPosition, -1, 1);
-                // Positive left movement
-                addLinearMoves(validMoves, board, myPosition, 1, -1);
-                // Negative right movement
-                addLinearMoves(validMoves, board, myPosition, -1, -1);
+                addPawnMoves(moves, from, pawnTargets(color, from, own | enemies, enemies) & allowed, enemies);
+                return;
+            case ROOK, KNIGHT, BISHOP, QUEEN:
+                // Everything but pawns moves onto the squares it attacks, minus our own pieces
+                targets = ChessBoard.attacksFrom(type, color, from, own | enemies) & ~own & allowed;
                 break;
             case KING:
-                // Straight moves
-                ChessPosition forward = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn());
-                if (inBounds(forward) && (board.getPiece(forward) == null || board.getPiece(forward).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, forward, null));
-                }
-
-                ChessPosition back = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn());
-                if (inBounds(back) && (board.getPiece(back) == null || board.getPiece(back).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, back, null));
-                }
-
-                ChessPosition right = new ChessPosition(myPosition.getRow(), myPosition.getColumn() + 1);
-                if (inBounds(right) && (board.getPiece(right) == null || board.getPiece(right).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, right, null));
-                }
-
-                ChessPosition left = new ChessPosition(myPosition.getRow(), myPosition.getColumn() - 1);
-                if (inBounds(left) && (board.getPiece(left) == null || board.getPiece(left).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, left, null));
-                }
-
-                // Diagonal moves
-                ChessPosition diagUpRight = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn() + 1);
-                if (inBounds(diagUpRight) && (board.getPiece(diagUpRight) == null || board.getPiece(diagUpRight).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, diagUpRight, null));
-                }
-
-                ChessPosition diagUpLeft = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn() - 1);
-                if (inBounds(diagUpLeft) && (board.getPiece(diagUpLeft) == null || board.getPiece(diagUpLeft).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, diagUpLeft, null));
-                }
-
-                ChessPosition diagDownRight = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn() + 1);
-                if (inBounds(diagDownRight) && (board.getPiece(diagDownRight) == null || board.getPiece(diagDownRight).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, diagDownRight, null));
-                }
-
-                ChessPosition diagDownLeft = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn() - 1);
-                if (inBounds(diagDownLeft) && (board.getPiece(diagDownLeft) == null || board.getPiece(diagDownLeft).getTeamColor() != color)) {
-                    validMoves.add(new ChessMove(myPosition, diagDownLeft, null));
-                }
+                targets = Bitboards.kingAttacks(from) & ~own; // The king doesn't block or capture a checker
                 break;
             default:
                 throw new RuntimeException("Invalid piece type");
         }
-        return validMoves;
-    }
-
-    private Collection<ChessMove> addKnightMoves(ChessBoard board, ChessPosition myPosition) {
-        List<ChessMove> validMoves = new ArrayList<>();
-
-        // Calculate knight moves using hardcoded offsets
-        ChessPosition upRight = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn() + 2);
-        if (inBounds(upRight)) {
-            ChessPiece piece = board.getPiece(upRight);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, upRight, null));
-            }
-        }
-
-        ChessPosition rightUp = new ChessPosition(myPosition.getRow() + 2, myPosition.getColumn() + 1);
-        if (inBounds(rightUp)) {
-            ChessPiece piece = board.getPiece(rightUp);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, rightUp, null));
-            }
-        }
-
-        // Repeat for other knight moves...
-        ChessPosition upLeft = new ChessPosition(myPosition.getRow() + 1, myPosition.getColumn() - 2);
-        if (inBounds(upLeft)) {
-            ChessPiece piece = board.getPiece(upLeft);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, upLeft, null));
-            }
-        }
-
-        ChessPosition leftUp = new ChessPosition(myPosition.getRow() + 2, myPosition.getColumn() - 1);
-        if (inBounds(leftUp)) {
-            ChessPiece piece = board.getPiece(leftUp);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, leftUp, null));
-            }
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(PackedMove.of(from, to, null, (enemies & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : 0));
         }
-
-        ChessPosition downRight = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn() + 2);
-        if (inBounds(downRight)) {
-            ChessPiece piece = board.getPiece(downRight);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, downRight, null));
-            }
-        }
-
-        ChessPosition rightDown = new ChessPosition(myPosition.getRow() - 2, myPosition.getColumn() + 1);
-        if (inBounds(rightDown)) {
-            ChessPiece piece = board.getPiece(rightDown);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, rightDown, null));
-            }
-        }
-
-        ChessPosition downLeft = new ChessPosition(myPosition.getRow() - 1, myPosition.getColumn() - 2);
-        if (inBounds(downLeft)) {
-            ChessPiece piece = board.getPiece(downLeft);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, downLeft, null));
-            }
-        }
-
-        ChessPosition leftDown = new ChessPosition(myPosition.getRow() - 2, myPosition.getColumn() - 1);
-        if (inBounds(leftDown)) {
-            ChessPiece piece = board.getPiece(leftDown);
-            if (piece == null || piece.getTeamColor() != color) {
-                validMoves.add(new ChessMove(myPosition, leftDown, null));
-            }
-        }
-        return validMoves;
     }
 
-    private Collection<ChessMove> addPawnMoves(ChessBoard board, ChessPosition myPosition) {
-        // Calculate pawn moves
-        List<ChessMove> validMoves = new ArrayList<ChessMove>();
-        int moveDirection = (color == ChessGame.TeamColor.WHITE) ? 1 : -1;
-
-        ChessPosition oneStep = new ChessPosition(myPosition.getRow() + moveDirection, myPosition.getColumn());
-        if (inBounds(oneStep) && board.getPiece(oneStep) == null) {
-            if (oneStep.getRow() == 8 && color == ChessGame.TeamColor.WHITE || oneStep.getRow() == 1 && color == ChessGame.TeamColor.BLACK) {
-                // Add all promotion moves
-                addPromotions(validMoves, myPosition, oneStep);
-            } else {
-                validMoves.add(new ChessMove(myPosition, oneStep, null));
-
-                // Check for double step
-                ChessPosition twoSteps = new ChessPosition(myPosition.getRow() + moveDirection * 2, myPosition.getColumn());
-                if (inBounds(twoSteps) && board.getPiece(twoSteps) == null && myPosition.getRow() == (color == ChessGame.TeamColor.WHITE ? 2 : 7)) {
-                    validMoves.add(new ChessMove(myPosition, twoSteps, null));
-                }
+    private void addPawnMoves(MoveList moves, int from, long targets, long enemies) {
+        long promotionRow = (color == ChessGame.TeamColor.WHITE) ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = (enemies & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : 0;
+            if (Math.abs(to - from) == 16) {
+                flags |= PackedMove.DOUBLE_PUSH;
             }
-        }
-
-        // Diagonal captures
-        if (myPosition.getColumn() != 8) {
-            ChessPosition rightKill = new ChessPosition(myPosition.getRow() + moveDirection, myPosition.getColumn() + 1);
-            if (inBounds(rightKill) && board.getPiece(rightKill) != null && board.getPiece(rightKill).getTeamColor() != color) {
-                if (rightKill.getRow() == 8 && color == ChessGame.TeamColor.WHITE || rightKill.getRow() == 1 && color == ChessGame.TeamColor.BLACK) {
-                    // Add all promotion moves
-                    addPromotions(validMoves, myPosition, rightKill);
-                } else {
-                    validMoves.add(new ChessMove(myPosition, rightKill, null));
-                }
-            }
-        }
-
-        if (myPosition.getColumn() != 1) {
-            ChessPosition leftKill = new ChessPosition(myPosition.getRow() + moveDirection, myPosition.getColumn() - 1);
-            if (inBounds(leftKill) && board.getPiece(leftKill) != null && board.getPiece(leftKill).getTeamColor() != color) {
-                if (leftKill.getRow() == 8 && color == ChessGame.TeamColor.WHITE || leftKill.getRow() == 1 && color == ChessGame.TeamColor.BLACK) {
-                    // Add all promotion moves
-                    addPromotions(validMoves, myPosition, leftKill);
-                } else {
-                    validMoves.add(new ChessMove(myPosition, leftKill, null));
+            if ((Bitboards.bit(to) & promotionRow) != 0) {
+                // Add promotion moves for all possible piece types
+                for (PieceType promotionType : PROMOTION_TYPES) {
+                    moves.add(PackedMove.of(from, to, promotionType, flags));
                 }
+            } else {
+                moves.add(PackedMove.of(from, to, null, flags));
             }
         }
-        return validMoves;
-    }
-
-    private void addPromotions(List<ChessMove> validMoves, ChessPosition from, ChessPosition to) {
-        // Add promotion moves for all possible piece types
-        for (ChessPiece.PieceType promotionType : new ChessPiece.PieceType[]{ChessPiece.PieceType.QUEEN,
-                ChessPiece.PieceType.ROOK, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT}) {
-            validMoves.add(new ChessMove(from, to, promotionType));
-        }
-    }
-
-    private boolean inBounds(ChessPosition newSpot) {
-        // System.out.println("Checking bounds for: (" + newSpot.getRow() + ", " + newSpot.getColumn() + ")");
-        return (newSpot.getRow() <= 8 && newSpot.getRow() >= 1 && newSpot.getColumn() >= 1 && newSpot.getColumn() <= 8);
     }
 
-    private void addLinearMoves(List<ChessMove> moves, ChessBoard board, ChessPosition myPosition, int rowStep, int colStep) {
-        int row = myPosition.getRow() + rowStep;
-        int col = myPosition.getColumn() + colStep;
-
-        while (row >= 1 && row <= 8 && col >= 1 && col <= 8) { // Ensure within bounds
-            ChessPosition newPos = new ChessPosition(row, col);
-            ChessPiece blockingPiece = board.getPiece(newPos);
-
-            if (blockingPiece == null) {
-                moves.add(new ChessMove(myPosition, newPos, null)); // Valid move
-            } else {
-                if (blockingPiece.getTeamColor() != color) {
-                    moves.add(new ChessMove(myPosition, newPos, null)); // Valid kill
-                }
-                break; // Stop movement after hitting a piece
+    private static final PieceType[] PROMOTION_TYPES = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+            PieceType.KNIGHT};
+
+    // Squares a pawn can move to (en passant aside): pushes onto empty squares and diagonal captures
+    static long pawnTargets(ChessGame.TeamColor color, int from, long occupied, long enemies) {
+        long empty = ~occupied;
+        int moveDirection = (color == ChessGame.TeamColor.WHITE) ? 8 : -8;
+
+        // One step forward, then two from the starting row if both squares are open
+        long targets = 0L;
+        int ahead = from + moveDirection;
+        long oneStep = (ahead >= 0 && ahead < 64) ? Bitboards.bit(ahead) & empty : 0L;
+        if (oneStep != 0) {
+            targets |= oneStep;
+            long startRow = (color == ChessGame.TeamColor.WHITE) ? Bitboards.RANK_2 : Bitboards.RANK_7;
+            if ((Bitboards.bit(from) & startRow) != 0) {
+                targets |= Bitboards.bit(from + 2 * moveDirection) & empty;
             }
-
-            row += rowStep; // Increment in the given direction
-            col += colStep;
         }
+
+        // Diagonal captures
+        return targets | (Bitboards.pawnAttacks(color, from) & enemies);
     }
 
 
@@ -323,6 +169,9 @@ public class ChessPiece {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -334,4 +183,36 @@ public class ChessPiece {
     public int hashCode() {
         return Objects.hash(type, color);
     }
+
+    // Reads and writes the same {"type":...,"color":...} JSON Gson would by default, but hands back
+    // the shared pieces so loading a game doesn't allocate a piece per square
+    static final class GsonAdapter extends TypeAdapter<ChessPiece> {
+
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.beginObject();
+            out.name("type").value(piece.type.name());
+            out.name("color").value(piece.color.name());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            PieceType type = null;
+            ChessGame.TeamColor color = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type" -> type = PieceType.valueOf(in.nextString());
+                    case "color" -> color = ChessGame.TeamColor.valueOf(in.nextString());
+                    default -> in.skipValue(); // Old games also stored per-piece move flags
+                }
+            }
+            in.endObject();
+            if (type == null || color == null) {
+                throw new IOException("Chess piece needs both a type and a color");
+            }
+            return of(color, type);
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -10,14 +8,38 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
-    int row;
-    int col;
+    // One shared instance per square, see of()
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            SQUARES[sq] = new ChessPosition(Bitboards.row(sq), Bitboards.column(sq));
+        }
+    }
+
+    final int row;
+    final int col;
 
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Gets the shared position for a square instead of allocating a new one. Positions
+     * never change, so one instance per square is all anyone needs
+     *
+     * @return the cached position, or a new one if row and col are off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        return Bitboards.onBoard(row, col) ? SQUARES[Bitboards.square(row, col)] : new ChessPosition(row, col);
+    }
+
+    // Same as of(row, col), by square number (see Bitboards)
+    static ChessPosition of(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -36,6 +58,9 @@ public class ChessPosition {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -45,6 +70,6 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return row * 31 + col;
     }
 }
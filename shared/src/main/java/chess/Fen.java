@@ -0,0 +1,255 @@
+package chess;
+
+/**
+ * Forsyth-Edwards Notation: a whole position in one line of text, e.g. the starting position
+ * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1}.
+ * <p>
+ * The six fields are the pieces (top row first, digits for runs of empty squares), the team
+ * to move, castling rights, the en passant square, the halfmove clock and the fullmove number.
+ * Parsing walks the text once without splitting it up, and writing appends to a StringBuilder
+ * the caller can reuse, so neither makes more than the board and game themselves.
+ */
+public final class Fen {
+
+    public static final String INITIAL = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "kqbnrp"; // In PieceType order
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Fen() {
+    }
+
+    /**
+     * Reads the piece placement, the first field of a FEN. Anything after it is ignored, so a full
+     * FEN works too
+     *
+     * @throws IllegalArgumentException if the placement isn't 8 rows of 8 squares
+     */
+    public static ChessBoard toBoard(CharSequence fen) {
+        ChessBoard board = new ChessBoard();
+        readPlacement(fen, board);
+        return board;
+    }
+
+    /**
+     * Reads a full FEN. The halfmove clock and fullmove number may be left off, as some tools do;
+     * castling rights for a king or rook that isn't on its starting square are dropped. The game
+     * only counts the halfmove clock up to 255 and the fullmove number from 1 to 65535, so a FEN
+     * outside those is rejected rather than read as something it would write back differently
+     *
+     * @throws IllegalArgumentException if the text isn't a valid FEN, or its halfmove clock or
+     *                                  fullmove number is out of range
+     */
+    public static ChessGame toGame(CharSequence fen) {
+        ChessBoard board = new ChessBoard();
+        int i = readPlacement(fen, board);
+
+        i = expectSpace(fen, i);
+        ChessGame.TeamColor turn = switch (charAt(fen, i)) {
+            case 'w' -> ChessGame.TeamColor.WHITE;
+            case 'b' -> ChessGame.TeamColor.BLACK;
+            default -> throw invalid(fen, "team to move should be w or b");
+        };
+        i++;
+
+        i = expectSpace(fen, i);
+        int castlingRights = 0;
+        if (charAt(fen, i) == '-') {
+            i++;
+        } else {
+            while (i < fen.length() && fen.charAt(i) != ' ') {
+                castlingRights |= switch (fen.charAt(i)) {
+                    case 'K' -> ChessGame.WHITE_KINGSIDE;
+                    case 'Q' -> ChessGame.WHITE_QUEENSIDE;
+                    case 'k' -> ChessGame.BLACK_KINGSIDE;
+                    case 'q' -> ChessGame.BLACK_QUEENSIDE;
+                    default -> throw invalid(fen, "unknown castling right " + fen.charAt(i));
+                };
+                i++;
+            }
+        }
+
+        i = expectSpace(fen, i);
+        int enPassantSquare = ChessGame.NO_SQUARE;
+        if (charAt(fen, i) == '-') {
+            i++;
+        } else {
+            int col = charAt(fen, i) - 'a' + 1;
+            int row = charAt(fen, i + 1) - '0';
+            if (col < 1 || col > 8 || row != (turn == ChessGame.TeamColor.WHITE ? 6 : 3)) {
+                throw invalid(fen, "en passant square should be on the row the last pawn skipped");
+            }
+            enPassantSquare = Bitboards.square(row, col);
+            i += 2;
+        }
+
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        if (i < fen.length()) {
+            i = expectSpace(fen, i);
+            int start = i;
+            for (halfmoveClock = 0; i < fen.length() && Character.isDigit(fen.charAt(i)); i++) {
+                halfmoveClock = Math.min(halfmoveClock * 10 + fen.charAt(i) - '0', ChessGame.MAX_CLOCK + 1);
+            }
+            if (i == start) {
+                throw invalid(fen, "halfmove clock should be a number");
+            }
+            if (halfmoveClock > ChessGame.MAX_CLOCK) {
+                throw invalid(fen, "halfmove clock over " + ChessGame.MAX_CLOCK + " isn't supported");
+            }
+            i = expectSpace(fen, i);
+            start = i;
+            for (fullmoveNumber = 0; i < fen.length() && Character.isDigit(fen.charAt(i)); i++) {
+                fullmoveNumber = Math.min(fullmoveNumber * 10 + fen.charAt(i) - '0', ChessGame.MAX_FULLMOVE + 1);
+            }
+            if (i == start) {
+                throw invalid(fen, "fullmove number should be a number");
+            }
+            if (fullmoveNumber < 1 || fullmoveNumber > ChessGame.MAX_FULLMOVE) {
+                throw invalid(fen, "fullmove number should be from 1 to " + ChessGame.MAX_FULLMOVE);
+            }
+        }
+        if (i != fen.length()) {
+            throw invalid(fen, "unexpected text at the end");
+        }
+
+        ChessGame game = ChessGame.restore(board, turn, 0, false, new long[0]);
+        game.loadState(castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+        return game;
+    }
+
+    /**
+     * @return the piece placement field for the board
+     */
+    public static String toFen(ChessBoard board) {
+        StringBuilder out = new StringBuilder(72);
+        writePlacement(board, out);
+        return out.toString();
+    }
+
+    /**
+     * @return the full FEN for the game's current position
+     */
+    public static String toFen(ChessGame game) {
+        StringBuilder out = new StringBuilder(90);
+        write(game, out);
+        return out.toString();
+    }
+
+    /**
+     * Appends the game's full FEN to the builder
+     */
+    public static void write(ChessGame game, StringBuilder out) {
+        writePlacement(game.getBoard(), out);
+        out.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+
+        int castlingRights = game.castlingRights();
+        if (castlingRights == 0) {
+            out.append('-');
+        } else {
+            if ((castlingRights & ChessGame.WHITE_KINGSIDE) != 0) {
+                out.append('K');
+            }
+            if ((castlingRights & ChessGame.WHITE_QUEENSIDE) != 0) {
+                out.append('Q');
+            }
+            if ((castlingRights & ChessGame.BLACK_KINGSIDE) != 0) {
+                out.append('k');
+            }
+            if ((castlingRights & ChessGame.BLACK_QUEENSIDE) != 0) {
+                out.append('q');
+            }
+        }
+
+        int enPassantSquare = game.enPassantSquare();
+        if (enPassantSquare == ChessGame.NO_SQUARE) {
+            out.append(" - ");
+        } else {
+            out.append(' ').append((char) ('a' + Bitboards.column(enPassantSquare) - 1))
+                    .append(Bitboards.row(enPassantSquare)).append(' ');
+        }
+        out.append(game.halfmoveClock()).append(' ').append(game.fullmoveNumber());
+    }
+
+    /**
+     * Appends the board's piece placement field to the builder
+     */
+    public static void writePlacement(ChessBoard board, StringBuilder out) {
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(piece.getPieceType().ordinal());
+                out.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                out.append('/');
+            }
+        }
+    }
+
+    // Fills the board from the placement field and returns the index just past it
+    private static int readPlacement(CharSequence fen, ChessBoard board) {
+        int row = 8;
+        int col = 1;
+        int i = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw invalid(fen, "row " + row + " should have 8 squares");
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0) {
+                    throw invalid(fen, "unknown piece " + c);
+                }
+                if (col > 8) {
+                    throw invalid(fen, "row " + row + " should have 8 squares");
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE
+                        : ChessGame.TeamColor.BLACK;
+                board.put(Bitboards.square(row, col), ChessPiece.of(color, TYPES[type]));
+                col++;
+            }
+            if (col > 9) {
+                throw invalid(fen, "row " + row + " should have 8 squares");
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw invalid(fen, "placement should have 8 rows of 8 squares");
+        }
+        return i;
+    }
+
+    private static int expectSpace(CharSequence fen, int i) {
+        if (charAt(fen, i) != ' ') {
+            throw invalid(fen, "missing field");
+        }
+        return i + 1;
+    }
+
+    // The character at i, or 0 past the end so a short FEN fails the same way as a wrong one
+    private static char charAt(CharSequence fen, int i) {
+        return i < fen.length() ? fen.charAt(i) : 0;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence fen, String problem) {
+        return new IllegalArgumentException("Invalid FEN \"" + fen + "\": " + problem);
+    }
+}
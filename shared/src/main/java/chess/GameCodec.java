@@ -0,0 +1,136 @@
+package chess;
+
+/**
+ * Compact binary form of a ChessGame for storage, in place of Gson's JSON of the whole
+ * object graph. Version 1 is:
+ * <pre>
+ *     byte  0      format version (1)
+ *     bytes 1-32   the 64 squares as nibbles, two per byte, low nibble first: 0 for empty,
+ *                  otherwise ChessBoard.pieceIndex + 1
+ *     bytes 33-36  the game-state word (castling, en passant file, clocks), big-endian
+ *     byte  37     flags: 1 = black to move, 2 = game over
+ *     byte  38     how many repetition keys follow (at most 255, as the halfmove clock stops there)
+ *     then         that many 8-byte Zobrist keys, big-endian
+ * </pre>
+ * So a game is 39 bytes plus 8 per move since the last capture or pawn move. Decoding reads
+ * the bytes straight into a board and game with no reflection. The version byte can never
+ * be '{', so stored JSON from before this format is easy to tell apart (see isEncoded).
+ */
+public final class GameCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int BOARD_OFFSET = 1;
+    private static final int STATE_OFFSET = BOARD_OFFSET + 32;
+    private static final int FLAGS_OFFSET = STATE_OFFSET + 4;
+    private static final int KEY_COUNT_OFFSET = FLAGS_OFFSET + 1;
+    private static final int KEYS_OFFSET = KEY_COUNT_OFFSET + 1;
+
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int GAME_OVER = 2;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return the game in the current format
+     */
+    public static byte[] encode(ChessGame game) {
+        long[] keys = game.repetitionKeys();
+        int keyCount = Math.min(keys.length, 255);
+        byte[] bytes = new byte[KEYS_OFFSET + 8 * keyCount];
+        bytes[0] = VERSION;
+
+        ChessBoard board = game.getBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.getPiece(sq);
+            if (piece != null) {
+                bytes[BOARD_OFFSET + sq / 2] |= (byte) ((ChessBoard.pieceIndex(piece) + 1) << (4 * (sq & 1)));
+            }
+        }
+
+        writeInt(bytes, STATE_OFFSET, game.stateWord());
+        int flags = (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0)
+                | (game.isGameOver() ? GAME_OVER : 0);
+        bytes[FLAGS_OFFSET] = (byte) flags;
+
+        // Keep the newest keys if there are somehow more than fit
+        bytes[KEY_COUNT_OFFSET] = (byte) keyCount;
+        for (int i = 0; i < keyCount; i++) {
+            writeLong(bytes, KEYS_OFFSET + 8 * i, keys[keys.length - keyCount + i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the game stored in the bytes
+     * @throws IllegalArgumentException if the bytes aren't in a format this version knows
+     */
+    public static ChessGame decode(byte[] bytes) {
+        if (!isEncoded(bytes) || bytes.length < KEYS_OFFSET) {
+            throw new IllegalArgumentException("Not an encoded chess game.");
+        }
+        int keyCount = bytes[KEY_COUNT_OFFSET] & 0xFF;
+        if (bytes.length != KEYS_OFFSET + 8 * keyCount) {
+            throw new IllegalArgumentException("Encoded chess game has the wrong length: " + bytes.length);
+        }
+
+        ChessBoard board = new ChessBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            int index = ((bytes[BOARD_OFFSET + sq / 2] >>> (4 * (sq & 1))) & 0xF) - 1;
+            if (index >= 12) {
+                throw new IllegalArgumentException("Encoded chess game has an unknown piece: " + index);
+            }
+            if (index >= 0) {
+                board.put(sq, ChessPiece.of(COLORS[index / 6], TYPES[index % 6]));
+            }
+        }
+
+        int flags = bytes[FLAGS_OFFSET];
+        long[] keys = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = readLong(bytes, KEYS_OFFSET + 8 * i);
+        }
+        ChessGame.TeamColor turn = (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return ChessGame.restore(board, turn, readInt(bytes, STATE_OFFSET), (flags & GAME_OVER) != 0, keys);
+    }
+
+    /**
+     * @return True if the bytes start with a format version this class can decode, as opposed
+     * to, say, a game stored as JSON
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == VERSION;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,127 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Reads a ChessGame stored as Gson JSON, from before games were stored with GameCodec.
+ * <p>
+ * The oldest JSON has no game-state word. It kept castling and en passant on the pieces instead:
+ * noMoves on every piece that hadn't moved yet, and passantable on a pawn that had just moved two
+ * squares. Those flags are turned into the state word here, so a king or rook that moved away and
+ * back doesn't get its castling rights back, and a pending en passant capture isn't lost.
+ */
+public final class LegacyGameJson {
+
+    private static final Gson GSON = new Gson();
+
+    // Not real castling rights, just marks for an unmoved king while the board is read
+    private static final int WHITE_KING_UNMOVED = 1 << 8;
+    private static final int BLACK_KING_UNMOVED = 1 << 9;
+
+    private LegacyGameJson() {
+    }
+
+    /**
+     * @return the game in the JSON, in either the oldest format or the one with a state word
+     * @throws IllegalArgumentException if the JSON isn't a stored game
+     */
+    public static ChessGame read(String json) {
+        JsonObject root;
+        try {
+            root = JsonParser.parseString(json).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not a stored chess game: " + e.getMessage());
+        }
+        if (root.has("state")) {
+            // Through restore, like GameCodec, so the state can't grant castling with a missing rook
+            ChessGame stored = GSON.fromJson(root, ChessGame.class);
+            return ChessGame.restore(stored.getBoard(), stored.getTeamTurn(), stored.stateWord(), stored.isGameOver(),
+                    stored.repetitionKeys());
+        }
+
+        ChessGame.TeamColor turn = root.has("teamTurn")
+                ? ChessGame.TeamColor.valueOf(root.get("teamTurn").getAsString()) : ChessGame.TeamColor.WHITE;
+        boolean gameOver = root.has("gameOver") && root.get("gameOver").getAsBoolean();
+
+        ChessBoard board = new ChessBoard();
+        int castling = 0;
+        int enPassantFile = -1;
+        JsonArray rows = board(root);
+        for (int row = 0; row < rows.size() && row < 8; row++) {
+            JsonArray columns = rows.get(row).getAsJsonArray();
+            for (int col = 0; col < columns.size() && col < 8; col++) {
+                JsonElement element = columns.get(col);
+                if (element == null || element.isJsonNull()) {
+                    continue;
+                }
+                JsonObject piece = element.getAsJsonObject();
+                ChessGame.TeamColor color = ChessGame.TeamColor.valueOf(piece.get("color").getAsString());
+                ChessPiece.PieceType type = ChessPiece.PieceType.valueOf(piece.get("type").getAsString());
+                ChessPosition position = ChessPosition.of(row + 1, col + 1);
+                board.addPiece(position, ChessPiece.of(color, type));
+
+                if (flag(piece, "noMoves", true)) {
+                    castling |= castlingRight(color, type, row + 1, col + 1);
+                }
+                // Only the team that just moved can have a pawn waiting to be taken en passant, and only
+                // on the row a double step lands on
+                int doubleStepRow = color == ChessGame.TeamColor.WHITE ? 4 : 5;
+                if (type == ChessPiece.PieceType.PAWN && color != turn && row + 1 == doubleStepRow
+                        && flag(piece, "passantable", false)) {
+                    enPassantFile = col;
+                }
+            }
+        }
+
+        // Castling needs the king unmoved as well as the rook
+        int rights = 0;
+        if ((castling & WHITE_KING_UNMOVED) != 0) {
+            rights |= castling & (ChessGame.WHITE_KINGSIDE | ChessGame.WHITE_QUEENSIDE);
+        }
+        if ((castling & BLACK_KING_UNMOVED) != 0) {
+            rights |= castling & (ChessGame.BLACK_KINGSIDE | ChessGame.BLACK_QUEENSIDE);
+        }
+
+        ChessGame game = ChessGame.restore(board, turn, 0, gameOver, new long[0]);
+        int enPassantSquare = enPassantFile < 0 ? ChessGame.NO_SQUARE
+                : Bitboards.square(turn == ChessGame.TeamColor.WHITE ? 6 : 3, enPassantFile + 1);
+        // The old format had no clocks, so they start over
+        game.loadState(rights, enPassantSquare, 0, 1);
+        return game;
+    }
+
+    // The right an unmoved king or rook on its starting square stands for
+    private static int castlingRight(ChessGame.TeamColor color, ChessPiece.PieceType type, int row, int col) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        if (row != (white ? 1 : 8)) {
+            return 0;
+        }
+        if (type == ChessPiece.PieceType.KING && col == 5) {
+            return white ? WHITE_KING_UNMOVED : BLACK_KING_UNMOVED;
+        }
+        if (type == ChessPiece.PieceType.ROOK && col == 8) {
+            return white ? ChessGame.WHITE_KINGSIDE : ChessGame.BLACK_KINGSIDE;
+        }
+        if (type == ChessPiece.PieceType.ROOK && col == 1) {
+            return white ? ChessGame.WHITE_QUEENSIDE : ChessGame.BLACK_QUEENSIDE;
+        }
+        return 0;
+    }
+
+    private static boolean flag(JsonObject piece, String name, boolean missing) {
+        JsonElement value = piece.get(name);
+        return value == null || value.isJsonNull() ? missing : value.getAsBoolean();
+    }
+
+    private static JsonArray board(JsonObject root) {
+        JsonElement gameBoard = root.get("gameBoard");
+        if (gameBoard == null || !gameBoard.isJsonObject() || !gameBoard.getAsJsonObject().has("board")) {
+            throw new IllegalArgumentException("Stored chess game has no board.");
+        }
+        return gameBoard.getAsJsonObject().get("board").getAsJsonArray();
+    }
+}
@@ -0,0 +1,218 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Magic-multiplication lookup tables for rook and bishop attacks.
+ * <p>
+ * For each square the relevant blockers (the slider's rays minus the board edge) are
+ * multiplied by a magic number so that the top bits form a perfect index into a table
+ * of precomputed attack sets. The magic numbers are bundled below (they came out of
+ * findMagic), so class loading only has to fill the tables; report() says what that cost.
+ */
+public final class MagicBitboards {
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MAGICS = {
+            0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+            0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+            0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+            0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+            0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+            0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+            0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+            0x0050500500080100L, 0x0000020080040080L, 0x0C10010400420810L, 0x1040008200005104L,
+            0x01808240088004A0L, 0x0882804004802000L, 0x0880402001001100L, 0x2000210409001000L,
+            0x2000480131001500L, 0x0000800400800200L, 0x000002380C001003L, 0x4600084882000431L,
+            0x0080002000504000L, 0x0300500020004002L, 0x0040408200220011L, 0x0010040008004040L,
+            0x0000080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+            0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+            0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+            0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+            0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x20C0090901061081L, 0x0024040094030104L, 0x8210810200290200L, 0x0011040484620000L,
+            0x0081104002221000L, 0x0009012011001350L, 0x0081010802400380L, 0x0000420210010408L,
+            0x0008105002280050L, 0x0001028484040044L, 0x2A00880810408804L, 0x7020022282000100L,
+            0x0084040420100A50L, 0x000401010840E000L, 0x2020020210420888L, 0x0008084202012010L,
+            0x2010400810018800L, 0x0445122008020840L, 0x0804100808002008L, 0x0008002104110100L,
+            0x0061005820080800L, 0x2001000200820100L, 0x480C210084010800L, 0x3004442500480420L,
+            0x1010102240048100L, 0x00182009084220A3L, 0x8803090A10004205L, 0x0208080040202020L,
+            0x000C044084010040L, 0x00A1010002004106L, 0x6008210020640202L, 0x1600902112860801L,
+            0x00042008C1220200L, 0x010C042002440140L, 0x5022080200040820L, 0x0402004042940100L,
+            0x0860108400008020L, 0x000C080022021000L, 0x0264080652822100L, 0x4005031221010401L,
+            0x0004502410008400L, 0x000500B010A20400L, 0x0415094050080800L, 0x080000201800A104L,
+            0x4022A80304000110L, 0x4012140802028020L, 0x40200104010100A0L, 0x12810806008B0C41L,
+            0x0020441008080000L, 0x2002120084045420L, 0x0704020062080002L, 0x0000001084040001L,
+            0x0322200891240200L, 0xF040200210024800L, 0x0140824832008042L, 0x000210020A004602L,
+            0x0083042805141020L, 0x002C12009A011000L, 0x0041A00044140400L, 0x00004004020A0202L,
+            0x0000140010020210L, 0x2864160811012200L, 0x2060080841082A17L, 0xA010041108003100L
+    };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+
+    // Every square's attack sets, rooks first, indexed by offset + magic index
+    private static final long[] ATTACKS;
+
+    private static final int ROOK_ENTRIES;
+    private static final int BISHOP_ENTRIES;
+    private static final long INIT_NANOS;
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        long start = System.nanoTime();
+        int rookEntries = 0;
+        int bishopEntries = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            ROOK_MASKS[sq] = relevantMask(sq, ROOK_DIRECTIONS);
+            ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+            ROOK_OFFSETS[sq] = rookEntries;
+            rookEntries += 1 << Long.bitCount(ROOK_MASKS[sq]);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            BISHOP_MASKS[sq] = relevantMask(sq, BISHOP_DIRECTIONS);
+            BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+            BISHOP_OFFSETS[sq] = rookEntries + bishopEntries;
+            bishopEntries += 1 << Long.bitCount(BISHOP_MASKS[sq]);
+        }
+        ROOK_ENTRIES = rookEntries;
+        BISHOP_ENTRIES = bishopEntries;
+        ATTACKS = new long[rookEntries + bishopEntries];
+
+        for (int sq = 0; sq < 64; sq++) {
+            // A bundled magic that doesn't fill cleanly (shouldn't happen) gets searched for again
+            if (!fillTable(sq, ROOK_MASKS[sq], ROOK_MAGICS[sq], ROOK_SHIFTS[sq], ROOK_OFFSETS[sq], ROOK_DIRECTIONS)) {
+                ROOK_MAGICS[sq] = findMagic(sq, ROOK_MASKS[sq], ROOK_SHIFTS[sq], ROOK_OFFSETS[sq], ROOK_DIRECTIONS);
+            }
+            if (!fillTable(sq, BISHOP_MASKS[sq], BISHOP_MAGICS[sq], BISHOP_SHIFTS[sq], BISHOP_OFFSETS[sq],
+                    BISHOP_DIRECTIONS)) {
+                BISHOP_MAGICS[sq] = findMagic(sq, BISHOP_MASKS[sq], BISHOP_SHIFTS[sq], BISHOP_OFFSETS[sq],
+                        BISHOP_DIRECTIONS);
+            }
+        }
+        INIT_NANOS = System.nanoTime() - start;
+    }
+
+    private MagicBitboards() {
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        long blockers = occupied & ROOK_MASKS[square];
+        return ATTACKS[ROOK_OFFSETS[square] + (int) ((blockers * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        long blockers = occupied & BISHOP_MASKS[square];
+        return ATTACKS[BISHOP_OFFSETS[square] + (int) ((blockers * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * @return number of attack sets stored across all rook and bishop tables
+     */
+    public static int tableEntries() {
+        return ROOK_ENTRIES + BISHOP_ENTRIES;
+    }
+
+    /**
+     * @return approximate heap used by the tables (attack sets plus per-square magic data)
+     */
+    public static long tableBytes() {
+        long perSquare = 2L * 64 * (Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES);
+        return (long) ATTACKS.length * Long.BYTES + perSquare;
+    }
+
+    /**
+     * @return how long building the tables took when the class loaded
+     */
+    public static long initNanos() {
+        return INIT_NANOS;
+    }
+
+    public static String report() {
+        return String.format("Magic slider tables: %d rook + %d bishop entries, %.1f KiB, built in %.1f ms",
+                ROOK_ENTRIES, BISHOP_ENTRIES, tableBytes() / 1024.0, INIT_NANOS / 1_000_000.0);
+    }
+
+    // Ray squares that can block a slider, which leaves out the last square on each ray
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] dir : directions) {
+            int row = Bitboards.row(square) + dir[0];
+            int col = Bitboards.column(square) + dir[1];
+            while (Bitboards.onBoard(row + dir[0], col + dir[1])) {
+                mask |= Bitboards.bit(Bitboards.square(row, col));
+                row += dir[0];
+                col += dir[1];
+            }
+        }
+        return mask;
+    }
+
+    // Slow reference attacks, only used to fill the tables
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] dir : directions) {
+            int row = Bitboards.row(square) + dir[0];
+            int col = Bitboards.column(square) + dir[1];
+            while (Bitboards.onBoard(row, col)) {
+                long squareBit = Bitboards.bit(Bitboards.square(row, col));
+                attacks |= squareBit;
+                if ((occupied & squareBit) != 0) {
+                    break;
+                }
+                row += dir[0];
+                col += dir[1];
+            }
+        }
+        return attacks;
+    }
+
+    // Fills one square's table, returning false if the magic maps two different attack sets to one slot
+    private static boolean fillTable(int square, long mask, long magic, int shift, int offset, int[][] directions) {
+        int size = 1 << Long.bitCount(mask);
+        Arrays.fill(ATTACKS, offset, offset + size, 0L);
+        long subset = 0L;
+        // Walk every subset of the mask (carry-rippler trick)
+        for (int i = 0; i < size; i++) {
+            long attacks = slidingAttacks(square, subset, directions);
+            int index = offset + (int) ((subset * magic) >>> shift);
+            // Slider attacks are never empty, so 0 marks a free slot
+            if (ATTACKS[index] != 0 && ATTACKS[index] != attacks) {
+                return false;
+            }
+            ATTACKS[index] = attacks;
+            subset = (subset - mask) & mask;
+        }
+        return true;
+    }
+
+    // Tries sparse random numbers until one fills the table without a harmful collision
+    private static long findMagic(int square, long mask, int shift, int offset, int[][] directions) {
+        while (true) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) >= 6
+                    && fillTable(square, mask, magic, shift, offset, directions)) {
+                return magic;
+            }
+        }
+    }
+
+    // xorshift64*, seeded so a search comes out the same on every start
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
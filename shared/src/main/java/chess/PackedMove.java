@@ -0,0 +1,83 @@
+package chess;
+
+/**
+ * Moves packed into an int, for move lists that shouldn't allocate a ChessMove (and two
+ * ChessPositions) per move.
+ * <p>
+ * Bits 0-5 are the start square and bits 6-11 the end square (see Bitboards for square
+ * numbers); bits 12-14 are the promotion piece's PieceType ordinal plus one, or 0 for none.
+ * Those 15 bits are the move itself. Bits 15-18 are flags the generator fills in to say
+ * what kind of move it is; they don't change which move it is, so compare moves with
+ * sameMove (or MoveList.containsMove) when one side may not have them.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int EN_PASSANT = 1 << 16;
+    public static final int CASTLE = 1 << 17;
+    public static final int DOUBLE_PUSH = 1 << 18;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int MOVE_MASK = (1 << 15) - 1;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << TO_SHIFT);
+    }
+
+    public static int of(int from, int to, ChessPiece.PieceType promotion) {
+        int move = of(from, to);
+        return promotion == null ? move : move | ((promotion.ordinal() + 1) << PROMOTION_SHIFT);
+    }
+
+    public static int of(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        return of(from, to, promotion) | flags;
+    }
+
+    /**
+     * Packs a ChessMove, without flags since a ChessMove doesn't say what kind of move it is
+     */
+    public static int of(ChessMove move) {
+        return of(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & 63;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move isn't a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotion = (move >>> PROMOTION_SHIFT) & 7;
+        return promotion == 0 ? null : TYPES[promotion - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return true if both are the same move, ignoring flags
+     */
+    public static boolean sameMove(int a, int b) {
+        return ((a ^ b) & MOVE_MASK) == 0;
+    }
+
+    /**
+     * @return the shared ChessMove for this move (see ChessMove.of)
+     */
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(move);
+    }
+}
@@ -0,0 +1,117 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Perft spread over a fork-join pool. The tree is split into one task per root move (and
+ * per reply too, with a split depth of 2); each task searches its own copy of the game, and
+ * all of them can share one PerftCache.
+ */
+public final class ParallelPerft {
+
+    /**
+     * Outcome of one parallel run
+     *
+     * @param nodesPerWorker leaf counts by fork-join worker index, to show how evenly the work was spread
+     */
+    public record Result(long nodes, long nanos, int threads, Map<Integer, Long> nodesPerWorker) {
+
+        public double nodesPerSecond() {
+            return nodes * 1e9 / Math.max(nanos, 1);
+        }
+    }
+
+    private ParallelPerft() {
+    }
+
+    /**
+     * Counts the leaves below the game's position using the given number of threads
+     *
+     * @param game       position to search; not changed
+     * @param depth      how many moves deep to count
+     * @param threads    fork-join parallelism
+     * @param splitDepth how many plies to split into separate tasks (1 = root moves, 2 = root moves and replies)
+     * @param cache      shared subtree cache, or null to search without one
+     */
+    public static Result perft(ChessGame game, int depth, int threads, int splitDepth, PerftCache cache) {
+        Map<Integer, LongAdder> perWorker = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            long nodes = pool.invoke(new PerftTask(game.copy(), depth, splitDepth, cache, perWorker));
+            long nanos = System.nanoTime() - start;
+
+            Map<Integer, Long> nodesPerWorker = new TreeMap<>();
+            perWorker.forEach((worker, count) -> nodesPerWorker.put(worker, count.sum()));
+            return new Result(nodes, nanos, threads, nodesPerWorker);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs the same search with 1, 2, ... maxThreads threads, each with a fresh cache of the
+     * given size (or none when cacheMegabytes is 0), for working out how well it scales
+     */
+    public static List<Result> scaling(ChessGame game, int depth, int maxThreads, int splitDepth, int cacheMegabytes) {
+        List<Result> results = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            PerftCache cache = cacheMegabytes > 0 ? new PerftCache(cacheMegabytes) : null;
+            results.add(perft(game, depth, threads, splitDepth, cache));
+        }
+        return results;
+    }
+
+    /**
+     * @return speedup over the single thread run divided by the thread count, so 1.0 is perfect scaling
+     */
+    public static double efficiency(Result single, Result result) {
+        return (double) single.nanos() / Math.max(result.nanos(), 1) / result.threads();
+    }
+
+    private static final class PerftTask extends RecursiveTask<Long> {
+        private final ChessGame game; // This task's own copy
+        private final int depth;
+        private final int splitDepth;
+        private final PerftCache cache;
+        private final Map<Integer, LongAdder> perWorker;
+
+        PerftTask(ChessGame game, int depth, int splitDepth, PerftCache cache, Map<Integer, LongAdder> perWorker) {
+            this.game = game;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+            this.cache = cache;
+            this.perWorker = perWorker;
+        }
+
+        @Override
+        protected Long compute() {
+            if (splitDepth == 0 || depth <= 1) {
+                long nodes = cache == null ? Perft.perft(game, depth) : Perft.perft(game, depth, cache);
+                int worker = Thread.currentThread() instanceof ForkJoinWorkerThread thread ? thread.getPoolIndex() : -1;
+                perWorker.computeIfAbsent(worker, w -> new LongAdder()).add(nodes);
+                return nodes;
+            }
+
+            List<PerftTask> tasks = new ArrayList<>();
+            for (ChessMove move : game.legalMoves()) {
+                game.doMove(move);
+                tasks.add(new PerftTask(game.copy(), depth - 1, splitDepth - 1, cache, perWorker));
+                game.undoMove();
+            }
+            long nodes = 0;
+            for (PerftTask task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Perft: counts every leaf of the legal move tree to a fixed depth. The counts for the
+ * reference positions below are well known, so any difference means a move generation
+ * bug, and nodes per second gives a throughput number for the generator.
+ * <p>
+ * Run from the command line with an optional depth and position names, e.g.
+ * {@code java -cp shared.jar chess.Perft 4 initial kiwipete}, adding {@code --threads N}
+ * to search in parallel (see ParallelPerft and main for the other options).
+ */
+public final class Perft {
+
+    /**
+     * A starting position with its known node counts, expected[d - 1] being the count at depth d
+     */
+    public record ReferencePosition(String name, String fen, long... expected) {
+
+        public ChessGame newGame() {
+            return Fen.toGame(fen);
+        }
+    }
+
+    public static final List<ReferencePosition> POSITIONS = List.of(
+            new ReferencePosition("initial", Fen.INITIAL, 20, 400, 8902, 197281, 4865609, 119060324),
+            // Lots of castling, pins and en passant in one position
+            new ReferencePosition("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2039, 97862, 4085603, 193690690),
+            // Endgame with en passant captures that would expose the king along the row
+            new ReferencePosition("endgame-en-passant", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2812, 43238, 674624, 11030083),
+            // Promotions, including capturing promotions, with black still able to castle
+            new ReferencePosition("promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9467, 422333, 15833292),
+            new ReferencePosition("discovered-checks", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1486, 62379, 2103487, 89941194),
+            new ReferencePosition("middlegame",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2079, 89890, 3894594, 164075551)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * Counts the leaves of the legal move tree below the game's current position
+     *
+     * @param game  the game to search; it is walked with doMove/undoMove and left as it was
+     * @param depth how many moves deep to count
+     * @return number of positions reached at that depth
+     */
+    public static long perft(ChessGame game, int depth) {
+        return perft(game, depth, moveLists(depth));
+    }
+
+    private static long perft(ChessGame game, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = game.legalMoves(moveLists[depth]);
+        if (depth == 1) {
+            return moves.size(); // No need to play the last move to count it
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += perft(game, depth - 1, moveLists);
+            game.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Same as perft(game, depth), but looks up and stores subtree counts in a cache so
+     * transpositions are only counted once
+     *
+     * @param cache subtree counts by position, possibly shared with other threads
+     */
+    public static long perft(ChessGame game, int depth, PerftCache cache) {
+        return perft(game, depth, cache, moveLists(depth));
+    }
+
+    private static long perft(ChessGame game, int depth, PerftCache cache, MoveList[] moveLists) {
+        if (depth <= 1) {
+            return perft(game, depth, moveLists); // Cheaper to count than to look up
+        }
+        long key = game.getZobristKey();
+        long nodes = cache.get(key, depth);
+        if (nodes >= 0) {
+            return nodes;
+        }
+        nodes = 0;
+        MoveList moves = game.legalMoves(moveLists[depth]);
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += perft(game, depth - 1, cache, moveLists);
+            game.undoMove();
+        }
+        cache.put(key, depth, nodes);
+        return nodes;
+    }
+
+    // One list per ply, reused for every position searched at that ply
+    private static MoveList[] moveLists(int depth) {
+        MoveList[] moveLists = new MoveList[depth + 1];
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return moveLists;
+    }
+
+    /**
+     * Finds a reference position by name
+     *
+     * @throws IllegalArgumentException if there is no position with that name
+     */
+    public static ReferencePosition position(String name) {
+        for (ReferencePosition position : POSITIONS) {
+            if (position.name().equals(name)) {
+                return position;
+            }
+        }
+        throw new IllegalArgumentException("Unknown perft position: " + name);
+    }
+
+    /**
+     * Usage: Perft [depth] [position names...] [--threads N] [--split 1|2] [--hash MB] [--scaling]
+     * <p>
+     * With --threads the search runs on a fork-join pool and prints each worker's share of the
+     * nodes; --scaling runs it with 1..N threads and prints the speedup and efficiency of each.
+     */
+    public static void main(String[] args) {
+        int depth = 4;
+        int threads = 1;
+        int splitDepth = 1;
+        int hashMegabytes = 0;
+        boolean scaling = false;
+        List<ReferencePosition> positions = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--split" -> splitDepth = Integer.parseInt(args[++i]);
+                case "--hash" -> hashMegabytes = Integer.parseInt(args[++i]);
+                case "--scaling" -> scaling = true;
+                default -> {
+                    if (Character.isDigit(args[i].charAt(0))) {
+                        depth = Integer.parseInt(args[i]);
+                    } else {
+                        positions.add(position(args[i]));
+                    }
+                }
+            }
+        }
+        if (positions.isEmpty()) {
+            positions.addAll(POSITIONS);
+        }
+
+        System.out.println(MagicBitboards.report());
+        boolean allMatched = true;
+        for (ReferencePosition position : positions) {
+            if (scaling) {
+                allMatched &= printScaling(position, depth, threads, splitDepth, hashMegabytes);
+                continue;
+            }
+            long nodes;
+            long nanos;
+            Map<Integer, Long> perWorker = Map.of();
+            if (threads > 1 || hashMegabytes > 0) {
+                PerftCache cache = hashMegabytes > 0 ? new PerftCache(hashMegabytes) : null;
+                ParallelPerft.Result result = ParallelPerft.perft(position.newGame(), depth, threads, splitDepth, cache);
+                nodes = result.nodes();
+                nanos = result.nanos();
+                perWorker = result.nodesPerWorker();
+            } else {
+                ChessGame game = position.newGame();
+                long start = System.nanoTime();
+                nodes = perft(game, depth);
+                nanos = System.nanoTime() - start;
+            }
+
+            boolean matched = matches(position, depth, nodes);
+            allMatched &= matched;
+            System.out.printf("%-20s depth %d: %,12d nodes in %,8d ms (%,.0f nodes/s) %s%n", position.name(),
+                    depth, nodes, nanos / 1_000_000, nodes * 1e9 / Math.max(nanos, 1), verdict(position, depth, matched));
+            if (perWorker.size() > 1) {
+                perWorker.forEach((worker, count) -> System.out.printf("    worker %2d: %,12d nodes%n", worker, count));
+            }
+        }
+        if (!allMatched) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean printScaling(ReferencePosition position, int depth, int maxThreads, int splitDepth,
+                                        int hashMegabytes) {
+        System.out.printf("%s depth %d, split %d, hash %d MB%n", position.name(), depth, splitDepth, hashMegabytes);
+        List<ParallelPerft.Result> results = ParallelPerft.scaling(position.newGame(), depth, maxThreads,
+                splitDepth, hashMegabytes);
+        boolean allMatched = true;
+        for (ParallelPerft.Result result : results) {
+            boolean matched = matches(position, depth, result.nodes());
+            allMatched &= matched;
+            System.out.printf("  %2d threads: %,8d ms (%,.0f nodes/s) speedup %.2fx, efficiency %3.0f%% %s%n",
+                    result.threads(), result.nanos() / 1_000_000, result.nodesPerSecond(),
+                    (double) results.get(0).nanos() / Math.max(result.nanos(), 1),
+                    100 * ParallelPerft.efficiency(results.get(0), result), verdict(position, depth, matched));
+        }
+        return allMatched;
+    }
+
+    private static boolean matches(ReferencePosition position, int depth, long nodes) {
+        return depth > position.expected().length || position.expected()[depth - 1] == nodes;
+    }
+
+    private static String verdict(ReferencePosition position, int depth, boolean matched) {
+        if (depth > position.expected().length) {
+            return "";
+        }
+        return matched ? "ok" : "MISMATCH, expected " + position.expected()[depth - 1];
+    }
+}
@@ -0,0 +1,69 @@
+package chess;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size table of perft subtree counts keyed by Zobrist key, shared by every perft worker
+ * without locks.
+ * <p>
+ * Each slot is two longs: the data (node count and depth) and the key xor'd with the data.
+ * Two threads writing the same slot at once can leave halves from different entries, but then
+ * the xor no longer gives back the key and the probe is simply a miss. Replacement is
+ * always-replace, which is fine for perft since every entry is equally cheap to recompute.
+ */
+public final class PerftCache {
+
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    // slots[2i] = key ^ data, slots[2i + 1] = data
+    private final long[] slots;
+    private final int indexMask;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param megabytes roughly how much memory to use; rounded down to a power of two number of entries
+     */
+    public PerftCache(int megabytes) {
+        long entries = Math.max(1L, (long) megabytes * 1024 * 1024 / (2 * Long.BYTES));
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 28));
+        slots = new long[size * 2];
+        indexMask = size - 1;
+    }
+
+    /**
+     * @return the stored node count for this position searched to this depth, or -1 if there isn't one
+     */
+    public long get(long key, int depth) {
+        probes.increment();
+        int index = (int) key & indexMask;
+        long check = slots[2 * index];
+        long data = slots[2 * index + 1];
+        if ((check ^ data) != key || (data & DEPTH_MASK) != depth) {
+            return -1;
+        }
+        hits.increment();
+        return data >>> DEPTH_BITS;
+    }
+
+    public void put(long key, int depth, long nodes) {
+        int index = (int) key & indexMask;
+        long data = (nodes << DEPTH_BITS) | depth;
+        slots[2 * index] = key ^ data;
+        slots[2 * index + 1] = data;
+    }
+
+    public int capacity() {
+        return indexMask + 1;
+    }
+
+    public long probes() {
+        return probes.sum();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+}
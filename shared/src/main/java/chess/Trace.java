@@ -0,0 +1,26 @@
+package chess;
+
+/**
+ * Debug tracing for the engine and server, off unless the JVM is started with
+ * {@code -Dchess.trace=true}.
+ * <p>
+ * Guard every call with the flag so the message isn't even built when tracing is off:
+ * <pre>
+ *     if (Trace.ENABLED) {
+ *         Trace.log("Checking if " + type + " can move");
+ *     }
+ * </pre>
+ * ENABLED is a static final constant, so the JIT drops the whole block and a disabled
+ * trace costs nothing, not even a branch.
+ */
+public final class Trace {
+
+    public static final boolean ENABLED = Boolean.getBoolean("chess.trace");
+
+    private Trace() {
+    }
+
+    public static void log(String message) {
+        System.out.println(message);
+    }
+}
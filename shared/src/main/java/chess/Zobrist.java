@@ -0,0 +1,60 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of the key for every
+ * piece on its square, plus keys for the side to move, the castling rights and the
+ * en passant file, so a move updates it with a handful of XORs.
+ */
+final class Zobrist {
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    static final long BLACK_TO_MOVE;
+
+    static {
+        // Fixed seed, so keys (and anything stored by key) stay the same between runs
+        long seed = 0x5DEECE66DL;
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                seed = next(seed);
+                PIECE_SQUARE[piece][sq] = mix(seed);
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            seed = next(seed);
+            CASTLING[i] = mix(seed);
+        }
+        for (int i = 0; i < 8; i++) {
+            seed = next(seed);
+            EN_PASSANT_FILE[i] = mix(seed);
+        }
+        BLACK_TO_MOVE = mix(next(seed));
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(int pieceIndex, int square) {
+        return PIECE_SQUARE[pieceIndex][square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enPassantFile(int square) {
+        return EN_PASSANT_FILE[square & 7];
+    }
+
+    // splitmix64
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
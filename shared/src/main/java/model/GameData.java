@@ -1,6 +1,7 @@
 package model;
 
 import chess.ChessGame;
+import chess.Trace;
 
 public class GameData {
     private int gameID; // Why are these all yellow???
@@ -19,24 +20,34 @@ public class GameData {
 
     // Getters
     public int getGameID() {
-        System.out.println("getGameID() called for game with ID: " + gameID);
+        if (Trace.ENABLED) {
+            Trace.log("getGameID() called for game with ID: " + gameID);
+        }
         return gameID;
     }
     public String getWhiteUsername() {
-        System.out.println("getWhiteUsername() called for game with ID: " + gameID);
+        if (Trace.ENABLED) {
+            Trace.log("getWhiteUsername() called for game with ID: " + gameID);
+        }
         return whiteUsername;
     }
     public String getBlackUsername() {
-        System.out.println("getBlackUsername() called for game with ID: " + gameID);
+        if (Trace.ENABLED) {
+            Trace.log("getBlackUsername() called for game with ID: " + gameID);
+        }
         return blackUsername;
     }
     public String getGameName() {
-        System.out.println("getGameName() called for game with ID: " + gameID);
+        if (Trace.ENABLED) {
+            Trace.log("getGameName() called for game with ID: " + gameID);
+        }
         return gameName;
     }
     public ChessGame getGame() {
-        System.out.println("getGame() called for game with ID: " + gameID);
-        System.out.println("Asking for game, turn is: " + game.getTeamTurn());
+        if (Trace.ENABLED) {
+            Trace.log("getGame() called for game with ID: " + gameID);
+            Trace.log("Asking for game, turn is: " + game.getTeamTurn());
+        }
         return game;
     }
 }
\ No newline at end of file
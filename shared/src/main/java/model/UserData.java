@@ -1,5 +1,7 @@
 package model;
 
+import chess.Trace;
+
 public class UserData {
     private String username;
     private String password;
@@ -13,17 +15,23 @@ public class UserData {
 
     // Getters
     public String getUsername() {
-        System.out.println("Getting username: " + username);
+        if (Trace.ENABLED) {
+            Trace.log("Getting username: " + username);
+        }
         return username;
     }
 
     public String getPassword() {
-        System.out.println("Getting password");
+        if (Trace.ENABLED) {
+            Trace.log("Getting password");
+        }
         return password;
     }
 
     public String getEmail() {
-        System.out.println("Getting email: " + email);
+        if (Trace.ENABLED) {
+            Trace.log("Getting email: " + email);
+        }
         return email;
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ChessBoardTest {
+
+    private ChessBoard board;
+
+    @BeforeEach
+    public void setUp() {
+        board = new ChessBoard();
+        board.addPiece(new ChessPosition(4, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(6, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        board.addPiece(new ChessPosition(5, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        board.addPiece(new ChessPosition(2, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+    }
+
+    @Test
+    public void testAttackersOfFindsEveryAttacker() {
+        int king = Bitboards.square(4, 4);
+        long attackers = board.attackersOf(king, ChessGame.TeamColor.BLACK, board.occupied());
+        // Rook down the column, knight and pawn up close; the bishop is blocked by the white pawn
+        long expected = Bitboards.bit(Bitboards.square(8, 4)) | Bitboards.bit(Bitboards.square(6, 3))
+                | Bitboards.bit(Bitboards.square(5, 5));
+        assertEquals(expected, attackers);
+        assertTrue(board.isSquareAttacked(king, ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void testRemovingBlockerOpensRay() {
+        int king = Bitboards.square(4, 4);
+        board.removePiece(new ChessPosition(2, 2));
+        long bishop = Bitboards.bit(Bitboards.square(1, 1));
+        assertEquals(bishop, board.attackersOf(king, ChessGame.TeamColor.BLACK, board.occupied()) & bishop);
+    }
+
+    @Test
+    public void testSquareNotAttacked() {
+        assertFalse(board.isSquareAttacked(Bitboards.square(1, 8), ChessGame.TeamColor.BLACK));
+        assertFalse(board.isSquareAttacked(Bitboards.square(8, 8), ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    public void testBoardHoldsSharedPieces() {
+        ChessPiece king = ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
+        assertSame(king, board.getPiece(new ChessPosition(4, 4)), "addPiece should store the shared piece");
+
+        ChessBoard reset = new ChessBoard();
+        reset.resetBoard();
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN),
+                reset.getPiece(new ChessPosition(8, 4)));
+
+        ChessGame game = new ChessGame();
+        ChessBoard promotion = new ChessBoard();
+        promotion.addPiece(new ChessPosition(7, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        game.setBoard(promotion);
+        game.doMove(new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT));
+        assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT),
+                promotion.getPiece(new ChessPosition(8, 1)));
+    }
+
+    @Test
+    public void testDeserializedPiecesAreShared() {
+        Gson gson = new Gson();
+        ChessBoard copy = gson.fromJson(gson.toJson(board), ChessBoard.class);
+        assertEquals(board, copy);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK),
+                copy.getPiece(new ChessPosition(8, 4)));
+
+        // Games saved before pieces became immutable still carry their old move flags
+        ChessPiece old = gson.fromJson("{\"type\":\"PAWN\",\"color\":\"BLACK\",\"passantable\":false,\"noMoves\":true}",
+                ChessPiece.class);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN), old);
+    }
+}
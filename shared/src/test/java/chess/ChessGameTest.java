@@ -0,0 +1,489 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+public class ChessGameTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol, ChessPiece.PieceType promotion) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), promotion);
+    }
+
+    @Test
+    public void testUndoRestoresSpecialMoves() {
+        ChessBoard board = TestUtilities.loadBoard("""
+                | | | | |k| | |r|
+                | |P| | | | |p| |
+                | | | | | | | | |
+                | | | | | | | |P|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | |K| | |R|
+                """);
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        ChessBoard start = TestUtilities.loadBoard("""
+                | | | | |k| | |r|
+                | |P| | | | |p| |
+                | | | | | | | | |
+                | | | | | | | |P|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | |K| | |R|
+                """);
+        var kingMovesBefore = new HashSet<>(game.validMoves(new ChessPosition(1, 5)));
+
+        game.doMove(move(1, 5, 1, 3, null)); // Castle queenside
+        game.doMove(move(7, 7, 5, 7, null)); // Pawn double step, allows en passant
+        game.doMove(move(5, 8, 6, 7, null)); // En passant capture
+        game.doMove(move(8, 8, 8, 7, null)); // Rook move, loses black's castling
+        game.doMove(move(7, 2, 8, 1, ChessPiece.PieceType.QUEEN)); // Promotion
+        assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        assertNull(game.getBoard().getPiece(new ChessPosition(5, 7)), "En passant should take the pawn");
+        assertEquals(ChessPiece.PieceType.ROOK, game.getBoard().getPiece(new ChessPosition(1, 4)).getPieceType());
+
+        for (int i = 0; i < 5; i++) {
+            game.undoMove();
+        }
+        assertEquals(start, game.getBoard());
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        assertEquals(kingMovesBefore, new HashSet<>(game.validMoves(new ChessPosition(1, 5))),
+                "Castling rights should come back with the undo");
+    }
+
+    @Test
+    public void testUndoRestoresEnPassantSquare() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5, null));
+        game.makeMove(move(7, 1, 6, 1, null));
+        game.makeMove(move(4, 5, 5, 5, null));
+        game.makeMove(move(7, 4, 5, 4, null));
+        ChessMove enPassant = move(5, 5, 6, 4, null);
+        assertTrue(game.validMoves(new ChessPosition(5, 5)).contains(enPassant));
+
+        // Trying out and undoing another move keeps the en passant chance
+        game.doMove(move(2, 1, 3, 1, null));
+        game.undoMove();
+        assertTrue(game.validMoves(new ChessPosition(5, 5)).contains(enPassant));
+    }
+
+    @Test
+    public void testPlyCountsBothTeams() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        assertEquals(0, game.getPly());
+        game.makeMove(move(2, 5, 4, 5, null));
+        assertEquals(1, game.getPly());
+        game.makeMove(move(7, 5, 5, 5, null));
+        assertEquals(2, game.getPly());
+        assertEquals(41, Fen.toGame("4k3/8/8/8/8/8/8/4K3 b - - 3 21").getPly());
+    }
+
+    @Test
+    public void testUndoWithoutMoveThrows() {
+        ChessGame game = new ChessGame();
+        assertThrows(IllegalStateException.class, game::undoMove);
+    }
+
+    @Test
+    public void testLegalMovesMatchValidMoves() {
+        // Every reference position and every position one move later
+        for (Perft.ReferencePosition position : Perft.POSITIONS) {
+            ChessGame game = position.newGame();
+            assertLegalMovesMatch(game, position.name());
+            for (ChessMove move : game.legalMoves()) {
+                game.doMove(move);
+                assertLegalMovesMatch(game, position.name() + " after " + move);
+                game.undoMove();
+            }
+        }
+    }
+
+    private static void assertLegalMovesMatch(ChessGame game, String message) {
+        var expected = new HashSet<ChessMove>();
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPosition position = new ChessPosition(Bitboards.row(sq), Bitboards.column(sq));
+            ChessPiece piece = game.getBoard().getPiece(position);
+            if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                expected.addAll(game.validMoves(position));
+            }
+        }
+        var legalMoves = game.legalMoves();
+        assertEquals(expected.size(), legalMoves.size(), message);
+        assertEquals(expected, new HashSet<>(legalMoves), message);
+    }
+
+    @Test
+    public void testLegalMovesReusesList() {
+        ChessGame game = new ChessGame();
+        MoveList moves = new MoveList(4);
+        assertSame(moves, game.legalMoves(moves));
+        assertEquals(20, moves.size());
+
+        game.doMove(moves.get(0));
+        game.legalMoves(moves);
+        assertEquals(20, moves.size(), "Refilling should clear the old moves first");
+    }
+
+    @Test
+    public void testCheckmateAndStalemateUseLegalMoves() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | |k|
+                | | | | | | | | |
+                | | | | | | |Q| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |K| | | | | | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertTrue(game.isInStalemate(ChessGame.TeamColor.BLACK));
+        assertFalse(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+        assertTrue(game.legalMoves().isEmpty());
+
+        // Queen to g7 is protected by nothing, so the king takes it
+        game.doMove(new ChessMove(new ChessPosition(6, 7), new ChessPosition(7, 7), null));
+        assertFalse(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+        assertFalse(game.isInStalemate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void testOffBoardMoveIsInvalid() {
+        ChessGame game = new ChessGame();
+        // (2, 9) would pack to a3, and a2-a3 is legal
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(move(2, 1, 2, 9, null)));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(move(2, 1, 9, 1, null)));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(move(0, 2, 3, 3, null)));
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn(), "No move should have been made");
+    }
+
+    @Test
+    public void testNoCastlingAfterRookIsRemoved() {
+        ChessGame game = Fen.toGame("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        game.getBoard().removePiece(new ChessPosition(1, 8));
+        Collection<ChessMove> kingMoves = game.validMoves(new ChessPosition(1, 5));
+        assertFalse(kingMoves.contains(move(1, 5, 1, 7, null)), "Can't castle with a rook that isn't there");
+        assertTrue(kingMoves.contains(move(1, 5, 1, 3, null)), "Queenside rook is still there");
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(move(1, 5, 1, 7, null)));
+    }
+
+    @Test
+    public void testLegalMoveFlags() {
+        ChessGame game = Perft.position("kiwipete").newGame();
+        game.doMove(new ChessMove(new ChessPosition(2, 1), new ChessPosition(4, 1), null)); // a2-a4, double push
+        MoveList moves = game.legalMoves(new MoveList());
+
+        int enPassant = 0;
+        int castles = 0;
+        int captures = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            enPassant += (move & PackedMove.EN_PASSANT) != 0 ? 1 : 0;
+            castles += (move & PackedMove.CASTLE) != 0 ? 1 : 0;
+            captures += PackedMove.isCapture(move) ? 1 : 0;
+        }
+        assertEquals(1, enPassant, "b4xa3 en passant");
+        assertEquals(2, castles);
+        assertTrue(captures > enPassant);
+        // A ChessMove packs without flags but is still found
+        assertTrue(moves.containsMove(PackedMove.of(new ChessMove(new ChessPosition(8, 5), new ChessPosition(8, 7), null))));
+        assertFalse(moves.contains(PackedMove.of(new ChessMove(new ChessPosition(8, 5), new ChessPosition(8, 7), null))));
+    }
+
+    @Test
+    public void testPinnedPiecesStayOnTheirRay() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | |r| | |k|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |R| | | |
+                | | | | | | | | |
+                | | |N| | | | |b|
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+
+        // Rook pinned on the e file can slide along it or take the pinner, nothing sideways
+        var rookMoves = new HashSet<>(game.validMoves(new ChessPosition(5, 5)));
+        assertEquals(6, rookMoves.size());
+        assertTrue(rookMoves.contains(move(5, 5, 8, 5, null)));
+        assertFalse(rookMoves.contains(move(5, 5, 5, 1, null)));
+        // The knight isn't pinned (the bishop on h3 isn't lined up with the king)
+        assertEquals(8, game.validMoves(new ChessPosition(3, 3)).size());
+    }
+
+    @Test
+    public void testKingCannotStepAlongCheckingRay() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | |k|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |r| | | |K| | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+
+        // f1 is still on the rook's row once the king has left e1
+        var kingMoves = new HashSet<>(game.validMoves(new ChessPosition(1, 5)));
+        assertFalse(kingMoves.contains(move(1, 5, 1, 6, null)));
+        assertEquals(3, kingMoves.size());
+    }
+
+    @Test
+    public void testGameStateWord() {
+        ChessGame game = new ChessGame();
+        assertEquals(ChessGame.WHITE_KINGSIDE | ChessGame.WHITE_QUEENSIDE
+                | ChessGame.BLACK_KINGSIDE | ChessGame.BLACK_QUEENSIDE, game.castlingRights());
+        assertEquals(1, game.fullmoveNumber());
+
+        game.doMove(move(1, 7, 3, 6, null)); // Knight out
+        assertEquals(1, game.halfmoveClock());
+        assertEquals(1, game.fullmoveNumber());
+        game.doMove(move(7, 5, 5, 5, null)); // Pawn double step
+        assertEquals(0, game.halfmoveClock(), "Pawn moves reset the clock");
+        assertEquals(2, game.fullmoveNumber(), "Fullmove number goes up after black moves");
+        assertEquals(Bitboards.square(6, 5), game.enPassantSquare());
+        game.doMove(move(1, 8, 1, 7, null)); // Rook move, loses white's kingside castling
+        game.doMove(move(8, 5, 7, 5, null)); // Black king steps up
+        assertEquals(ChessGame.WHITE_QUEENSIDE, game.castlingRights());
+        assertEquals(ChessGame.NO_SQUARE, game.enPassantSquare());
+        assertEquals(3, game.fullmoveNumber());
+
+        for (int i = 0; i < 4; i++) {
+            game.undoMove();
+        }
+        assertEquals(new ChessGame().getZobristKey(), game.getZobristKey());
+        assertEquals(0, game.halfmoveClock());
+        assertEquals(1, game.fullmoveNumber());
+    }
+
+    private static void shuffleKnights(ChessGame game) throws InvalidMoveException {
+        game.makeMove(move(1, 7, 3, 6, null));
+        game.makeMove(move(8, 7, 6, 6, null));
+        game.makeMove(move(3, 6, 1, 7, null));
+        game.makeMove(move(6, 6, 8, 7, null));
+    }
+
+    @Test
+    public void testThreefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        assertFalse(game.isDraw(), "Starting position has only come up twice");
+        shuffleKnights(game);
+        assertTrue(game.isDraw());
+        assertEquals(ChessGame.DrawReason.REPETITION, game.getDrawReason());
+
+        game.undoMove();
+        assertNull(game.getDrawReason());
+    }
+
+    @Test
+    public void testRepetitionSurvivesSaving() throws InvalidMoveException {
+        Gson gson = new Gson();
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        game = gson.fromJson(gson.toJson(game), ChessGame.class);
+        game.makeMove(move(1, 7, 3, 6, null));
+        game.makeMove(move(8, 7, 6, 6, null));
+        game = gson.fromJson(gson.toJson(game), ChessGame.class);
+        game.makeMove(move(3, 6, 1, 7, null));
+        game.makeMove(move(6, 6, 8, 7, null));
+        assertEquals(ChessGame.DrawReason.REPETITION, game.getDrawReason());
+    }
+
+    @Test
+    public void testSavingAfterUndo() throws InvalidMoveException {
+        Gson gson = new Gson();
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        game.undoMove();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertArrayEquals(game.repetitionKeys(), loaded.repetitionKeys(), "Undone position shouldn't be saved");
+
+        loaded.makeMove(move(6, 6, 8, 7, null));
+        assertEquals(ChessGame.DrawReason.REPETITION, loaded.getDrawReason());
+    }
+
+    @Test
+    public void testPawnMoveResetsRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        game.makeMove(move(2, 1, 3, 1, null));
+        game.makeMove(move(7, 1, 6, 1, null));
+        shuffleKnights(game);
+        assertFalse(game.isDraw(), "Positions before a pawn move can't repeat");
+    }
+
+    @Test
+    public void testFiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 24; i++) {
+            shuffleKnights(game);
+        }
+        game.makeMove(move(1, 7, 3, 6, null));
+        game.makeMove(move(8, 7, 6, 6, null));
+        game.makeMove(move(3, 6, 1, 7, null));
+        assertEquals(99, game.halfmoveClock());
+        assertEquals(ChessGame.DrawReason.REPETITION, game.getDrawReason());
+        game.makeMove(move(6, 6, 8, 7, null));
+        assertEquals(100, game.halfmoveClock());
+        assertEquals(ChessGame.DrawReason.FIFTY_MOVES, game.getDrawReason(), "Fifty moves is checked first");
+    }
+
+    private static ChessGame.DrawReason materialDraw(String board) {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard(board));
+        return game.getDrawReason();
+    }
+
+    @Test
+    public void testInsufficientMaterial() {
+        assertEquals(ChessGame.DrawReason.INSUFFICIENT_MATERIAL, materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+        assertEquals(ChessGame.DrawReason.INSUFFICIENT_MATERIAL, materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |n| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+        // Bishops all on dark squares
+        assertEquals(ChessGame.DrawReason.INSUFFICIENT_MATERIAL, materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |B| |b| |K| | | |
+                """));
+        // Opposite colored bishops can still mate
+        assertNull(materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |B|b| | |K| | | |
+                """));
+        assertNull(materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |N|N| | |K| | | |
+                """));
+        assertNull(materialDraw("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |P| | | | | | | |
+                | | | | |K| | | |
+                """));
+    }
+
+    @Test
+    public void testStatusAfterEachMove() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        game.makeMove(move(2, 6, 3, 6, null));
+        game.makeMove(move(7, 5, 5, 5, null));
+        game.makeMove(move(2, 7, 4, 7, null));
+        assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        game.makeMove(move(8, 4, 4, 8, null)); // Fool's mate
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.getStatus());
+        assertTrue(game.getStatus().isTerminal());
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.WHITE));
+        assertTrue(game.isInCheck(ChessGame.TeamColor.WHITE));
+        assertTrue(game.legalMoves().isEmpty());
+
+        // Taking the move back has to be noticed even though nothing told the cache
+        game.undoMove();
+        assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        assertEquals(30, game.legalMoves().size());
+        assertFalse(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void testStatusSeesCheckAndDraws() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |Q|K| | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        game.makeMove(move(1, 4, 4, 4, null));
+        assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        game.makeMove(move(8, 5, 8, 6, null));
+        game.makeMove(move(4, 4, 6, 6, null));
+        assertEquals(ChessGame.GameStatus.CHECK, game.getStatus());
+        assertFalse(game.getStatus().isTerminal());
+
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+        assertEquals(ChessGame.GameStatus.DRAW_MATERIAL, game.getStatus());
+
+        game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        assertEquals(ChessGame.GameStatus.DRAW_REPETITION, game.getStatus());
+    }
+
+    @Test
+    public void testValidMovesUseCachedList() {
+        ChessGame game = new ChessGame();
+        assertEquals(2, game.validMoves(new ChessPosition(1, 2)).size());
+        // The other team's pieces aren't in the cached list, but still get their moves
+        assertEquals(2, game.validMoves(new ChessPosition(8, 7)).size());
+    }
+}
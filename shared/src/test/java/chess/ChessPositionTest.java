@@ -0,0 +1,47 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessPositionTest {
+
+    @Test
+    public void testOfReturnsSharedInstances() {
+        assertSame(ChessPosition.of(4, 5), ChessPosition.of(4, 5));
+        assertEquals(new ChessPosition(4, 5), ChessPosition.of(4, 5));
+        assertEquals(new ChessPosition(4, 5).hashCode(), ChessPosition.of(4, 5).hashCode());
+
+        // Off the board still works, it just isn't cached
+        ChessPosition offBoard = ChessPosition.of(9, 1);
+        assertEquals(9, offBoard.getRow());
+        assertNotSame(offBoard, ChessPosition.of(9, 1));
+    }
+
+    @Test
+    public void testMovesAreShared() {
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        assertSame(move, ChessMove.of(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertSame(move, PackedMove.toChessMove(PackedMove.of(move) | PackedMove.DOUBLE_PUSH));
+        assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), move);
+
+        ChessMove promotion = ChessMove.of(ChessPosition.of(2, 3), ChessPosition.of(1, 2), ChessPiece.PieceType.ROOK);
+        assertSame(promotion, PackedMove.toChessMove(PackedMove.of(promotion)));
+        assertEquals(ChessPiece.PieceType.ROOK, promotion.getPromotionPiece());
+
+        // No piece moves like this, but it is still a move
+        ChessMove odd = ChessMove.of(ChessPosition.of(1, 1), ChessPosition.of(2, 3), ChessPiece.PieceType.QUEEN);
+        assertEquals(ChessPosition.of(2, 3), odd.getEndPosition());
+    }
+
+    @Test
+    public void testLegalMovesUseSharedInstances() {
+        ChessGame game = new ChessGame();
+        for (ChessMove move : game.legalMoves()) {
+            assertSame(ChessMove.of(move.getStartPosition(), move.getEndPosition(), null), move);
+            assertSame(ChessPosition.of(move.getStartPosition().getRow(), move.getStartPosition().getColumn()),
+                    move.getStartPosition());
+        }
+        assertSame(game.getBoard().getAllPositions(), new ChessBoard().getAllPositions());
+    }
+}
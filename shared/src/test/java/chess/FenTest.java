@@ -0,0 +1,108 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FenTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    public void testInitialPosition() {
+        ChessGame game = new ChessGame();
+        assertEquals(Fen.INITIAL, Fen.toFen(game));
+        ChessGame loaded = Fen.toGame(Fen.INITIAL);
+        assertEquals(game.getBoard(), loaded.getBoard());
+        assertEquals(game.getZobristKey(), loaded.getZobristKey());
+    }
+
+    @Test
+    public void testReferencePositionsRoundTrip() {
+        for (Perft.ReferencePosition position : Perft.POSITIONS) {
+            assertEquals(position.fen(), Fen.toFen(position.newGame()), position.name());
+        }
+    }
+
+    @Test
+    public void testStateAfterMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", Fen.toFen(game));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(1, 5, 2, 5));
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPPKPPP/RNBQ1BNR b kq - 2 2", Fen.toFen(game));
+
+        ChessGame loaded = Fen.toGame(Fen.toFen(game));
+        assertEquals(game.getZobristKey(), loaded.getZobristKey());
+        assertEquals(2, loaded.halfmoveClock());
+        assertEquals(2, loaded.fullmoveNumber());
+    }
+
+    @Test
+    public void testEnPassantIsPlayable() {
+        ChessGame game = Fen.toGame("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+        assertEquals(Bitboards.square(6, 5), game.enPassantSquare());
+        assertTrue(game.validMoves(new ChessPosition(5, 4)).contains(move(5, 4, 6, 5)));
+    }
+
+    @Test
+    public void testUnbackedStateIsDropped() {
+        // No rooks to castle with, and no pawn that could have just skipped e6
+        ChessGame game = Fen.toGame("4k3/8/8/8/8/8/8/4K3 w KQkq e6 0 1");
+        assertEquals(0, game.castlingRights());
+        assertEquals(ChessGame.NO_SQUARE, game.enPassantSquare());
+        assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1", Fen.toFen(game));
+    }
+
+    @Test
+    public void testClocksAreOptional() {
+        ChessGame game = Fen.toGame("4k3/8/8/8/8/8/8/4K3 b - -");
+        assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        assertEquals(0, game.halfmoveClock());
+        assertEquals(1, game.fullmoveNumber());
+    }
+
+    @Test
+    public void testHalfmoveClockLimit() {
+        String fen = "4k3/8/8/8/8/8/8/4K3 w - - 255 200";
+        assertEquals(fen, Fen.toFen(Fen.toGame(fen)));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - 256 200"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - 99999999999 200"));
+    }
+
+    @Test
+    public void testFullmoveNumberLimit() {
+        for (String fen : new String[]{"4k3/8/8/8/8/8/8/4K3 w - - 0 10001", "4k3/8/8/8/8/8/8/4K3 b - - 0 65535"}) {
+            assertEquals(fen, Fen.toFen(Fen.toGame(fen)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - 0 65536"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - 0 0"));
+    }
+
+    @Test
+    public void testBoardPlacement() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR", Fen.toFen(board));
+        assertEquals(board, Fen.toBoard(Fen.INITIAL));
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN),
+                Fen.toBoard(Fen.INITIAL).getPiece(new ChessPosition(8, 4)));
+    }
+
+    @Test
+    public void testInvalidFen() {
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame(""));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toBoard("8/8/8/8/8/8/8"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toBoard("9/8/8/8/8/8/8/8"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toBoard("rnbqkbnrr/8/8/8/8/8/8/8"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toBoard("x7/8/8/8/8/8/8/8"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 x - - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w X - 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - e3 0 1"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - x 1"));
+        assertThrows(IllegalArgumentException.class, () -> Fen.toGame("4k3/8/8/8/8/8/8/4K3 w - - 0 1 extra"));
+    }
+}
@@ -0,0 +1,68 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCodecTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    public void testNewGameIsSmall() {
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        assertEquals(39, bytes.length);
+        assertTrue(GameCodec.isEncoded(bytes));
+        assertEquals(Fen.INITIAL, Fen.toFen(GameCodec.decode(bytes)));
+    }
+
+    @Test
+    public void testReferencePositionsRoundTrip() {
+        for (Perft.ReferencePosition position : Perft.POSITIONS) {
+            ChessGame game = position.newGame();
+            ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+            assertEquals(position.fen(), Fen.toFen(decoded), position.name());
+            assertEquals(game.getZobristKey(), decoded.getZobristKey(), position.name());
+            assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING),
+                    decoded.getBoard().getPiece(Long.numberOfTrailingZeros(
+                            decoded.getBoard().pieces(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING))));
+        }
+    }
+
+    @Test
+    public void testKeepsTurnGameOverAndRepetitions() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(6, 6, 8, 7));
+        game.makeMove(move(3, 6, 1, 7));
+        game.setGameOver(true);
+
+        byte[] bytes = GameCodec.encode(game);
+        assertEquals(39 + 8 * 4, bytes.length, "One key per move since the pawn move");
+        ChessGame decoded = GameCodec.decode(bytes);
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getTeamTurn());
+        assertTrue(decoded.isGameOver());
+        assertEquals(Fen.toFen(game), Fen.toFen(decoded));
+
+        // Knights back and forth once more makes the third time for this position
+        decoded.setGameOver(false);
+        decoded.makeMove(move(8, 7, 6, 6));
+        decoded.makeMove(move(1, 7, 3, 6));
+        decoded.makeMove(move(6, 6, 8, 7));
+        decoded.makeMove(move(3, 6, 1, 7));
+        assertEquals(ChessGame.GameStatus.DRAW_REPETITION, decoded.getStatus());
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        assertFalse(GameCodec.isEncoded("{\"teamTurn\":\"WHITE\"}".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[]{GameCodec.VERSION, 0, 0}));
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        bytes[1] = (byte) 0xDD; // Piece index 12 doesn't exist
+        assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+    }
+}
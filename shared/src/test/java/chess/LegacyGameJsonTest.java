@@ -0,0 +1,116 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegacyGameJsonTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    // A piece as the first version of the server stored it, flags and all
+    private static String piece(String color, String type, boolean passantable, boolean noMoves) {
+        return "{\"type\":\"" + type + "\",\"color\":\"" + color + "\",\"passantable\":" + passantable
+                + ",\"noMoves\":" + noMoves + "}";
+    }
+
+    // A whole game in that format. Squares are "e1" style
+    private static String legacyJson(String turn, Map<String, String> pieces) {
+        StringBuilder json = new StringBuilder("{\"teamTurn\":\"" + turn + "\",\"gameBoard\":{\"board\":[");
+        for (int row = 1; row <= 8; row++) {
+            json.append(row > 1 ? ",[" : "[");
+            for (int col = 1; col <= 8; col++) {
+                String square = "" + (char) ('a' + col - 1) + row;
+                json.append(col > 1 ? "," : "").append(pieces.getOrDefault(square, "null"));
+            }
+            json.append("]");
+        }
+        return json.append("]},\"gameOver\":false}").toString();
+    }
+
+    @Test
+    public void testMovedKingAndRookLoseCastling() {
+        // White's king and h-rook went away and came back; black's a-rook is gone
+        String json = legacyJson("WHITE", Map.of(
+                "e1", piece("WHITE", "KING", false, false),
+                "a1", piece("WHITE", "ROOK", false, true),
+                "h1", piece("WHITE", "ROOK", false, false),
+                "e8", piece("BLACK", "KING", false, true),
+                "h8", piece("BLACK", "ROOK", false, true)));
+        ChessGame game = LegacyGameJson.read(json);
+        assertEquals(ChessGame.BLACK_KINGSIDE, game.castlingRights());
+        assertEquals("4k2r/8/8/8/8/8/8/R3K2R w k - 0 1", Fen.toFen(game));
+        assertFalse(game.validMoves(new ChessPosition(1, 5)).contains(move(1, 5, 1, 7)));
+        assertFalse(game.validMoves(new ChessPosition(1, 5)).contains(move(1, 5, 1, 3)));
+    }
+
+    @Test
+    public void testMissingRookMeansNoCastling() {
+        // The reported crash: king unmoved on e1, nothing on h1
+        String json = legacyJson("WHITE", Map.of(
+                "e1", piece("WHITE", "KING", false, true),
+                "e8", piece("BLACK", "KING", false, true)));
+        ChessGame game = LegacyGameJson.read(json);
+        assertEquals(0, game.castlingRights());
+        assertFalse(game.validMoves(new ChessPosition(1, 5)).contains(move(1, 5, 1, 7)));
+    }
+
+    @Test
+    public void testUnmovedPiecesKeepCastling() {
+        String json = legacyJson("BLACK", Map.of(
+                "e1", piece("WHITE", "KING", false, true),
+                "a1", piece("WHITE", "ROOK", false, true),
+                "h1", piece("WHITE", "ROOK", false, true),
+                "e8", piece("BLACK", "KING", false, true),
+                "a8", piece("BLACK", "ROOK", false, true)));
+        ChessGame game = LegacyGameJson.read(json);
+        assertEquals("r3k3/8/8/8/8/8/8/R3K2R b KQq - 0 1", Fen.toFen(game));
+        assertTrue(game.validMoves(new ChessPosition(8, 5)).contains(move(8, 5, 8, 3)));
+    }
+
+    @Test
+    public void testPassantablePawnKeepsEnPassant() throws InvalidMoveException {
+        // White just played d2-d4 and black's e4 pawn can take it
+        String json = legacyJson("BLACK", Map.of(
+                "e1", piece("WHITE", "KING", false, false),
+                "e8", piece("BLACK", "KING", false, false),
+                "d4", piece("WHITE", "PAWN", true, false),
+                "e4", piece("BLACK", "PAWN", false, false)));
+        ChessGame game = LegacyGameJson.read(json);
+        assertEquals("4k3/8/8/8/3Pp3/8/8/4K3 b - d3 0 1", Fen.toFen(game));
+        game.makeMove(move(4, 5, 3, 4));
+        assertNull(game.getBoard().getPiece(new ChessPosition(4, 4)), "En passant should take the pawn");
+    }
+
+    @Test
+    public void testPassantableFlagOfTeamToMoveIsIgnored() {
+        // A stale flag on the side to move can't be captured this turn
+        String json = legacyJson("WHITE", Map.of(
+                "e1", piece("WHITE", "KING", false, false),
+                "e8", piece("BLACK", "KING", false, false),
+                "d4", piece("WHITE", "PAWN", true, false)));
+        assertEquals(ChessGame.NO_SQUARE, LegacyGameJson.read(json).enPassantSquare());
+    }
+
+    @Test
+    public void testNewerJsonIsReadAsIs() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 1, 6, 1));
+        game.makeMove(move(1, 7, 3, 6));
+        ChessGame read = LegacyGameJson.read(new Gson().toJson(game));
+        assertEquals(Fen.toFen(game), Fen.toFen(read));
+        assertEquals(game.getZobristKey(), read.getZobristKey());
+    }
+
+    @Test
+    public void testRejectsOtherJson() {
+        assertThrows(IllegalArgumentException.class, () -> LegacyGameJson.read("not json"));
+        assertThrows(IllegalArgumentException.class, () -> LegacyGameJson.read("{\"teamTurn\":\"WHITE\"}"));
+    }
+}
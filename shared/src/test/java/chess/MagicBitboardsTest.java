@@ -0,0 +1,58 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class MagicBitboardsTest {
+
+    // Walk each ray until something blocks it, the slow way
+    private static long expectedAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] dir : directions) {
+            int row = Bitboards.row(square) + dir[0];
+            int col = Bitboards.column(square) + dir[1];
+            while (Bitboards.onBoard(row, col)) {
+                attacks |= Bitboards.bit(Bitboards.square(row, col));
+                if ((occupied & Bitboards.bit(Bitboards.square(row, col))) != 0) {
+                    break;
+                }
+                row += dir[0];
+                col += dir[1];
+            }
+        }
+        return attacks;
+    }
+
+    @Test
+    public void testSliderAttacksMatchRayWalk() {
+        int[][] rookDirections = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        int[][] bishopDirections = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        Random random = new Random(240);
+        for (int sq = 0; sq < 64; sq++) {
+            for (int i = 0; i < 200; i++) {
+                long occupied = random.nextLong() & random.nextLong();
+                assertEquals(expectedAttacks(sq, occupied, rookDirections), Bitboards.rookAttacks(sq, occupied),
+                        "Rook attacks wrong on square " + sq);
+                assertEquals(expectedAttacks(sq, occupied, bishopDirections), Bitboards.bishopAttacks(sq, occupied),
+                        "Bishop attacks wrong on square " + sq);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyBoardAttacks() {
+        // Rook on a1 sees the whole first row and column, bishop on d4 sees 13 squares
+        assertEquals(14, Long.bitCount(Bitboards.rookAttacks(Bitboards.square(1, 1), 0L)));
+        assertEquals(13, Long.bitCount(Bitboards.bishopAttacks(Bitboards.square(4, 4), 0L)));
+    }
+
+    @Test
+    public void testReport() {
+        assertEquals(102400 + 5248, MagicBitboards.tableEntries());
+        assertTrue(MagicBitboards.tableBytes() > 102400L * Long.BYTES);
+        assertTrue(MagicBitboards.report().startsWith("Magic slider tables"));
+    }
+}
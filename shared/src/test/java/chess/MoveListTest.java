@@ -0,0 +1,38 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveListTest {
+
+    @Test
+    public void testPackedMoveRoundTrip() {
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        int packed = PackedMove.of(promotion);
+        assertEquals(Bitboards.square(7, 2), PackedMove.from(packed));
+        assertEquals(Bitboards.square(8, 1), PackedMove.to(packed));
+        assertEquals(ChessPiece.PieceType.KNIGHT, PackedMove.promotion(packed));
+        assertEquals(promotion, PackedMove.toChessMove(packed));
+
+        ChessMove plain = new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 8), null);
+        assertNull(PackedMove.promotion(PackedMove.of(plain)));
+        assertEquals(plain, PackedMove.toChessMove(PackedMove.of(plain)));
+    }
+
+    @Test
+    public void testGrowsAndClears() {
+        MoveList moves = new MoveList(2);
+        for (int i = 0; i < 100; i++) {
+            moves.add(i);
+        }
+        assertEquals(100, moves.size());
+        assertEquals(57, moves.get(57));
+        assertTrue(moves.contains(99));
+        assertThrows(IndexOutOfBoundsException.class, () -> moves.get(100));
+
+        moves.clear();
+        assertTrue(moves.isEmpty());
+        assertFalse(moves.contains(0));
+    }
+}
@@ -0,0 +1,57 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelPerftTest {
+
+    @Test
+    public void testRootSplitMatchesReference() {
+        Perft.ReferencePosition position = Perft.position("promotions");
+        ParallelPerft.Result result = ParallelPerft.perft(position.newGame(), 3, 4, 1, null);
+
+        assertEquals(position.expected()[2], result.nodes());
+        assertEquals(result.nodes(), result.nodesPerWorker().values().stream().mapToLong(Long::longValue).sum(),
+                "every node should be credited to some worker");
+    }
+
+    @Test
+    public void testTwoPlySplitWithSharedCache() {
+        Perft.ReferencePosition position = Perft.position("kiwipete");
+        ChessGame game = position.newGame();
+        long key = game.getZobristKey();
+        ParallelPerft.Result result = ParallelPerft.perft(game, 3, 4, 2, new PerftCache(4));
+
+        assertEquals(position.expected()[2], result.nodes());
+        assertEquals(key, game.getZobristKey(), "the caller's game should not be touched");
+    }
+
+    @Test
+    public void testScaling() {
+        Perft.ReferencePosition position = Perft.position("initial");
+        List<ParallelPerft.Result> results = ParallelPerft.scaling(position.newGame(), 3, 2, 1, 0);
+
+        assertEquals(2, results.size());
+        for (ParallelPerft.Result result : results) {
+            assertEquals(position.expected()[2], result.nodes());
+        }
+        assertEquals(1.0, ParallelPerft.efficiency(results.get(0), results.get(0)), 1e-9);
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        ChessGame game = new ChessGame();
+        ChessGame copy = game.copy();
+        copy.doMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        assertNotNull(game.getBoard().getPiece(new ChessPosition(2, 5)));
+        assertNotEquals(game.getZobristKey(), copy.getZobristKey());
+        copy.undoMove();
+        assertEquals(game.getZobristKey(), copy.getZobristKey());
+        assertEquals(game.getBoard(), copy.getBoard());
+    }
+}
@@ -0,0 +1,42 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftCacheTest {
+
+    @Test
+    public void testStoresCountsByKeyAndDepth() {
+        PerftCache cache = new PerftCache(1);
+        cache.put(0x1234_5678_9ABC_DEF0L, 3, 97862);
+
+        assertEquals(97862, cache.get(0x1234_5678_9ABC_DEF0L, 3));
+        assertEquals(-1, cache.get(0x1234_5678_9ABC_DEF0L, 4), "a different depth is a different entry");
+        assertEquals(-1, cache.get(0x1234_5678_9ABC_DEF1L, 3));
+        assertEquals(3, cache.probes());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testSameSlotIsReplaced() {
+        PerftCache cache = new PerftCache(1);
+        long first = 5;
+        long second = first + cache.capacity(); // Same index, different key
+        cache.put(first, 2, 100);
+        cache.put(second, 2, 200);
+
+        assertEquals(-1, cache.get(first, 2));
+        assertEquals(200, cache.get(second, 2));
+    }
+
+    @Test
+    public void testCachedPerftMatchesPlainPerft() {
+        Perft.ReferencePosition kiwipete = Perft.position("kiwipete");
+        PerftCache cache = new PerftCache(4);
+        assertEquals(kiwipete.expected()[2], Perft.perft(kiwipete.newGame(), 3, cache));
+        // Second time the root comes straight out of the cache
+        assertEquals(kiwipete.expected()[2], Perft.perft(kiwipete.newGame(), 3, cache));
+        assertTrue(cache.hits() > 0);
+    }
+}
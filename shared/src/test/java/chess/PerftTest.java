@@ -0,0 +1,60 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reference perft positions. The default depths keep the suite quick; pass
+ * -Dperft.depth=N to check every position as deep as its known counts go, up to N.
+ */
+public class PerftTest {
+
+    private static final int EXTRA_DEPTH = Integer.getInteger("perft.depth", 0);
+
+    private void checkPosition(String name, int defaultDepth) {
+        Perft.ReferencePosition position = Perft.position(name);
+        int maxDepth = Math.min(Math.max(defaultDepth, EXTRA_DEPTH), position.expected().length);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            ChessGame game = position.newGame();
+            long key = game.getZobristKey();
+            assertEquals(position.expected()[depth - 1], Perft.perft(game, depth), name + " at depth " + depth);
+            assertEquals(key, game.getZobristKey(), "perft should leave the game as it found it");
+        }
+    }
+
+    @Test
+    public void testInitialPosition() {
+        checkPosition("initial", 3);
+    }
+
+    @Test
+    public void testKiwipete() {
+        checkPosition("kiwipete", 2);
+    }
+
+    @Test
+    public void testEndgameEnPassant() {
+        checkPosition("endgame-en-passant", 3);
+    }
+
+    @Test
+    public void testPromotions() {
+        checkPosition("promotions", 3);
+    }
+
+    @Test
+    public void testDiscoveredChecks() {
+        checkPosition("discovered-checks", 2);
+    }
+
+    @Test
+    public void testMiddlegame() {
+        checkPosition("middlegame", 2);
+    }
+
+    @Test
+    public void testUnknownPosition() {
+        assertThrows(IllegalArgumentException.class, () -> Perft.position("nowhere"));
+    }
+}
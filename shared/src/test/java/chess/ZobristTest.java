@@ -0,0 +1,83 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ZobristTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    public void testIncrementalKeyMatchesFromScratch() {
+        ChessGame game = new ChessGame();
+        Random random = new Random(240);
+        List<Long> keys = new ArrayList<>();
+        int played = 0;
+        for (int ply = 0; ply < 60; ply++) {
+            List<ChessMove> moves = new ArrayList<>();
+            for (int sq = 0; sq < 64; sq++) {
+                ChessPiece piece = game.getBoard().getPiece(sq);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(new ChessPosition(Bitboards.row(sq), Bitboards.column(sq))));
+                }
+            }
+            if (moves.isEmpty()) {
+                break;
+            }
+            keys.add(game.getZobristKey());
+            game.doMove(moves.get(random.nextInt(moves.size())));
+            played++;
+            assertEquals(game.getBoard().computeZobristKey(), game.getBoard().zobristKey(), "Key drifted at ply " + ply);
+        }
+
+        // Taking every move back walks back through the same keys
+        for (int i = played - 1; i >= 0; i--) {
+            game.undoMove();
+            assertEquals(keys.get(i), game.getZobristKey());
+        }
+    }
+
+    @Test
+    public void testTranspositionsShareKey() {
+        ChessGame first = new ChessGame();
+        first.doMove(move(1, 2, 3, 3));
+        first.doMove(move(8, 2, 6, 3));
+        first.doMove(move(1, 7, 3, 6));
+
+        ChessGame second = new ChessGame();
+        second.doMove(move(1, 7, 3, 6));
+        second.doMove(move(8, 2, 6, 3));
+        second.doMove(move(1, 2, 3, 3));
+
+        assertEquals(first.getZobristKey(), second.getZobristKey());
+        assertEquals(first.getBoard().hashCode(), second.getBoard().hashCode());
+    }
+
+    @Test
+    public void testTurnAndCastlingChangeKey() {
+        ChessGame game = new ChessGame();
+        long start = game.getZobristKey();
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertNotEquals(start, game.getZobristKey());
+
+        // Knight out and back returns the board, but a rook out and back loses castling
+        ChessGame rookGame = new ChessGame();
+        rookGame.doMove(move(1, 7, 3, 6));
+        rookGame.doMove(move(8, 7, 6, 6));
+        rookGame.doMove(move(1, 8, 1, 7));
+        rookGame.doMove(move(8, 2, 6, 3));
+        rookGame.doMove(move(1, 7, 1, 8));
+        rookGame.doMove(move(6, 3, 8, 2));
+        rookGame.doMove(move(3, 6, 1, 7));
+        rookGame.doMove(move(6, 6, 8, 7));
+        assertEquals(new ChessGame().getBoard(), rookGame.getBoard());
+        assertNotEquals(start, rookGame.getZobristKey());
+    }
+}